@@ -0,0 +1,96 @@
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/* Класс AllocationBenchmark измеряет, сколько байт памяти выделяется на одну операцию
+   на горячих путях обмена: пересчет по снимку курсов, поиск валюты по коду, кодирование
+   строки журнала и полный обмен с записью в журнал (включая поток-писатель журнала).
+   Используется счетчик выделенной памяти потока com.sun.management.ThreadMXBean.
+   Запуск: gradle :bench:jmhJar && java -cp bench/build/libs/bench-jmh.jar AllocationBenchmark
+ */
+public class AllocationBenchmark {
+
+  // Количество операций в одном замере
+  private static final int OPERATIONS = 2_000_000;
+
+  private static final com.sun.management.ThreadMXBean THREADS =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+  // Результат суммируется в статическое поле, чтобы JIT не удалил вычисления
+  private static double sink;
+
+  public static void main(String[] args) throws Exception {
+    Path directory = BenchmarkFiles.createDirectory("allocation-benchmark");
+    ExchangeManager exchangeManager =
+        new ExchangeManager(directory.resolve("history.txt"), HistoryFormat.TEXT);
+    RateSnapshot snapshot = exchangeManager.getRateSnapshot();
+    CurrencyEnum[] currencies = CurrencyEnum.values();
+    String[] codes = {"usd", "EUR", "gbp", "CHF", "pln", "CZK"};
+    ByteBuffer buffer = ByteBuffer.allocateDirect(HistoryFormat.MAX_ENCODED_SIZE);
+
+    // Каждый замер выполняется дважды: первый проход - прогрев JIT, второй - измерение
+    for (int pass = 0; pass < 2; pass++) {
+      boolean print = pass == 1;
+      measure("RateSnapshot.convert", print, () -> {
+        for (int i = 0; i < OPERATIONS; i++) {
+          sink += snapshot.convert(i, currencies[i % 6], currencies[(i + 1) % 6]);
+        }
+      });
+      measure("CurrencyEnum.fromCode", print, () -> {
+        for (int i = 0; i < OPERATIONS; i++) {
+          sink += CurrencyEnum.fromCode(codes[i % 6]).ordinal();
+        }
+      });
+      long now = System.currentTimeMillis();
+      measure("HistoryFormat.TEXT.encode", print, () -> {
+        for (int i = 0; i < OPERATIONS; i++) {
+          buffer.clear();
+          HistoryFormat.TEXT.encode(now + i / 1000, i * 0.25, currencies[i % 6],
+              currencies[(i + 1) % 6], i * 0.85, 1, buffer);
+        }
+        sink += buffer.position();
+      });
+      measure("ExchangeManager.exchange + журнал", print, () -> {
+        try {
+          for (int i = 0; i < OPERATIONS; i++) {
+            sink += exchangeManager.exchange(snapshot, System.currentTimeMillis(), i * 0.25,
+                currencies[i % 6], currencies[(i + 1) % 6]);
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+    }
+    exchangeManager.close();
+    // Кроме журнала в каталоге остаются индекс, итоги и сегменты истории
+    BenchmarkFiles.delete(directory);
+    System.out.println("(sink=" + sink + ")");
+  }
+
+  // Выполняет замер и выводит число байт, выделенных на одну операцию в текущем потоке
+  // и в потоке-писателе журнала
+  private static void measure(String name, boolean print, Runnable workload) {
+    long thread = Thread.currentThread().getId();
+    long writer = writerThreadId();
+    long before = THREADS.getThreadAllocatedBytes(thread);
+    long writerBefore = writer < 0 ? 0 : THREADS.getThreadAllocatedBytes(writer);
+    long start = System.nanoTime();
+    workload.run();
+    long elapsed = System.nanoTime() - start;
+    long allocated = THREADS.getThreadAllocatedBytes(thread) - before;
+    long writerAllocated = writer < 0 ? 0 : THREADS.getThreadAllocatedBytes(writer) - writerBefore;
+    if (print) {
+      System.out.printf("%-36s %8.3f байт/оп (писатель журнала: %8.3f байт/оп), %7.1f нс/оп%n",
+          name, (double) allocated / OPERATIONS, (double) writerAllocated / OPERATIONS,
+          (double) elapsed / OPERATIONS);
+    }
+  }
+
+  private static long writerThreadId() {
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (thread.getName().equals("history-journal-writer")) {
+        return thread.getId();
+      }
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,36 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/* Класс BenchmarkFiles - временные каталоги для журналов, которые создают бенчмарки.
+   Каталог по умолчанию берется из java.io.tmpdir; для больших журналов (10 млн записей)
+   его можно переназначить свойством -Dbench.dir=<каталог>.
+ */
+final class BenchmarkFiles {
+
+  private BenchmarkFiles() {
+  }
+
+  // Создает новый пустой каталог для файлов одного бенчмарка
+  static Path createDirectory(String prefix) throws IOException {
+    String root = System.getProperty("bench.dir");
+    if (root == null) {
+      return Files.createTempDirectory(prefix);
+    }
+    return Files.createTempDirectory(Files.createDirectories(Path.of(root)), prefix);
+  }
+
+  // Удаляет каталог вместе со всем содержимым
+  static void delete(Path directory) throws IOException {
+    if (!Files.exists(directory)) {
+      return;
+    }
+    try (Stream<Path> paths = Files.walk(directory)) {
+      for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(path);
+      }
+    }
+  }
+}
@@ -0,0 +1,66 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/* Класс ConversionWorkload - нагрузка для bench.ConversionBenchmark.
+   Хранит менеджер обмена, его курсы в виде HashMap и матрицы, а также таблицу пар валют.
+ */
+public class ConversionWorkload implements bench.ConversionBenchmark.Workload {
+
+  // Каталог с файлом журнала менеджера
+  private final Path directory;
+  private final ExchangeManager exchangeManager;
+  private final Map<CurrencyEnum, Double> rates;
+  private final CrossRateMatrix matrix;
+  private final RateSnapshot snapshot;
+  // Заранее сгенерированные пары валют, чтобы в замер не попадала их генерация
+  private final CurrencyEnum[] sources = new CurrencyEnum[bench.ConversionBenchmark.PAIRS];
+  private final CurrencyEnum[] targets = new CurrencyEnum[bench.ConversionBenchmark.PAIRS];
+
+  public ConversionWorkload() throws IOException {
+    // Журнал истории при пересчете не используется, поэтому он создается во временном каталоге
+    directory = BenchmarkFiles.createDirectory("conversion-benchmark");
+    exchangeManager = new ExchangeManager(directory.resolve("history.txt"), HistoryFormat.TEXT);
+    rates = new HashMap<>(exchangeManager.getExchangeRates());
+    matrix = CrossRateMatrix.fromRates(rates);
+    snapshot = exchangeManager.getRateSnapshot();
+    for (int i = 0; i < sources.length; i++) {
+      sources[i] = CurrencyEnum.byOrdinal(i % CurrencyEnum.count());
+      targets[i] = CurrencyEnum.byOrdinal((i * 7 + 3) % CurrencyEnum.count());
+    }
+  }
+
+  @Override
+  public double viaMap(double amount, int pair) {
+    CurrencyEnum source = sources[pair];
+    CurrencyEnum target = targets[pair];
+    if (rates.containsKey(source) && rates.containsKey(target)) {
+      double sourceRate = rates.get(source);
+      double targetRate = rates.get(target);
+      return amount * (targetRate / sourceRate);
+    }
+    return Double.NaN;
+  }
+
+  @Override
+  public double viaMatrix(double amount, int pair) {
+    return matrix.convert(amount, sources[pair], targets[pair]);
+  }
+
+  @Override
+  public double viaSnapshot(double amount, int pair) {
+    return snapshot.convert(amount, sources[pair], targets[pair]);
+  }
+
+  @Override
+  public double viaManager(double amount, int pair) {
+    return exchangeManager.convert(amount, sources[pair], targets[pair]);
+  }
+
+  @Override
+  public void close() throws IOException {
+    exchangeManager.close();
+    BenchmarkFiles.delete(directory);
+  }
+}
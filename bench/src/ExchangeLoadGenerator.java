@@ -0,0 +1,89 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/* Класс ExchangeLoadGenerator - генератор нагрузки для ExchangeServer.
+   Открывает несколько соединений, в каждом последовательно отправляет запросы на обмен
+   и измеряет время ответа на каждый запрос. В конце выводит пропускную способность
+   и задержки p50, p99 и максимальную.
+   Запуск: java -cp bench/build/libs/bench-jmh.jar ExchangeLoadGenerator [хост] [порт] [соединений] [запросов на соединение]
+ */
+public class ExchangeLoadGenerator {
+
+  public static void main(String[] args) throws Exception {
+    String host = args.length > 0 ? args[0] : "localhost";
+    int port = args.length > 1 ? Integer.parseInt(args[1]) : ExchangeServer.DEFAULT_PORT;
+    int connections = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+    int requestsPerConnection = args.length > 3 ? Integer.parseInt(args[3]) : 10_000;
+
+    ExecutorService clients = Executors.newFixedThreadPool(connections);
+    List<Future<long[]>> results = new ArrayList<>();
+    long start = System.nanoTime();
+    for (int i = 0; i < connections; i++) {
+      int client = i;
+      results.add(clients.submit(() -> runClient(host, port, client, requestsPerConnection)));
+    }
+    long[] latencies = new long[connections * requestsPerConnection];
+    int count = 0;
+    for (Future<long[]> result : results) {
+      long[] clientLatencies = result.get();
+      System.arraycopy(clientLatencies, 0, latencies, count, clientLatencies.length);
+      count += clientLatencies.length;
+    }
+    long elapsed = System.nanoTime() - start;
+    clients.shutdown();
+
+    Arrays.sort(latencies, 0, count);
+    System.out.printf("Запросов: %d, соединений: %d, время: %.2f с%n", count, connections,
+        elapsed / 1e9);
+    System.out.printf("Пропускная способность: %.0f запросов/с%n", count / (elapsed / 1e9));
+    System.out.printf("Задержка p50: %.1f мкс, p99: %.1f мкс, max: %.1f мкс%n",
+        percentile(latencies, count, 0.50) / 1e3, percentile(latencies, count, 0.99) / 1e3,
+        latencies[count - 1] / 1e3);
+  }
+
+  // Один клиент: отправляет запросы по одному и ждет ответа на каждый
+  private static long[] runClient(String host, int port, int client, int requests)
+      throws IOException {
+    CurrencyEnum[] currencies = CurrencyEnum.values();
+    long[] latencies = new long[requests];
+    try (Socket socket = new Socket(host, port);
+        BufferedReader reader = new BufferedReader(
+            new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        Writer writer = new BufferedWriter(
+            new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+      socket.setTcpNoDelay(true);
+      for (int i = 0; i < requests; i++) {
+        String request = (i % 1000 + 1) + " " + currencies[(client + i) % currencies.length]
+            + " " + currencies[(client + i * 7 + 1) % currencies.length] + "\n";
+        long start = System.nanoTime();
+        writer.write(request);
+        writer.flush();
+        String response = reader.readLine();
+        latencies[i] = System.nanoTime() - start;
+        if (response == null || !response.startsWith("OK")) {
+          throw new IOException("Неожиданный ответ сервера: " + response);
+        }
+      }
+      writer.write("QUIT\n");
+      writer.flush();
+    }
+    return latencies;
+  }
+
+  private static long percentile(long[] sorted, int count, double fraction) {
+    int index = (int) Math.ceil(fraction * count) - 1;
+    return sorted[Math.max(0, Math.min(count - 1, index))];
+  }
+}
@@ -0,0 +1,38 @@
+import java.io.IOException;
+import java.nio.file.Path;
+
+/* Класс HistoryAppendWorkload - нагрузка для bench.HistoryAppendBenchmark.
+   Открывает журнал с параметрами по умолчанию во временном каталоге и добавляет в него
+   синтетические записи; валюты и суммы зависят от номера записи.
+ */
+public class HistoryAppendWorkload implements bench.HistoryAppendBenchmark.Workload {
+
+  private Path directory;
+  private HistoryJournal journal;
+  // Время первой записи; следующие записи идут с шагом в одну миллисекунду
+  private long startMillis;
+
+  @Override
+  public void open(String format) throws IOException {
+    HistoryFormat historyFormat = HistoryFormat.valueOf(format);
+    directory = BenchmarkFiles.createDirectory("append-benchmark");
+    journal = new HistoryJournal(directory.resolve(historyFormat.getDefaultFileName()),
+        historyFormat);
+    startMillis = System.currentTimeMillis();
+  }
+
+  @Override
+  public void append(long sequence) throws InterruptedException {
+    int source = (int) (sequence % CurrencyEnum.count());
+    int target = (int) ((sequence + 1) % CurrencyEnum.count());
+    double amount = 10 + (sequence & 1023) * 0.25;
+    journal.append(startMillis + sequence, amount, CurrencyEnum.byOrdinal(source),
+        CurrencyEnum.byOrdinal(target), amount * 0.85, 1);
+  }
+
+  @Override
+  public void close() throws IOException {
+    journal.close();
+    BenchmarkFiles.delete(directory);
+  }
+}
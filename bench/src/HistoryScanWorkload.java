@@ -0,0 +1,113 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.stream.Stream;
+
+/* Класс HistoryScanWorkload - нагрузка для bench.HistoryScanBenchmark.
+   Синтетический журнал: записи идут каждые 100 мс начиная с 1 января 2024 года,
+   исходная валюта перебирается по кругу, а целевая всегда отличается от исходной на 1-4 позиции.
+   Поэтому пары "исходная -> предыдущая по порядку" (например, USD -> CZK) в журнале нет,
+   и запрос по ней читает весь журнал. Журнал пишется с ротацией по умолчанию (64 МБ или сутки),
+   поэтому состоит из сжатых сегментов и активного файла.
+ */
+public class HistoryScanWorkload implements bench.HistoryScanBenchmark.Workload {
+
+  // Время первой записи журнала (2024-01-01T00:00:00Z) и шаг между записями
+  private static final long START_MILLIS = 1_704_067_200_000L;
+  private static final long STEP_MILLIS = 100;
+  private static final long HOUR_MILLIS = 60 * 60 * 1000L;
+  private static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+
+  private Path directory;
+  private Path file;
+  private HistoryFormat historyFormat;
+  private ExchangeHistory history;
+  // Итоги журнала, восстановленные из контрольной точки, и сутки из середины журнала для запроса
+  private HistoryAggregates aggregates;
+  private long middleDay;
+  // Запросы, которые выполняются в замерах
+  private HistoryQuery missingPair;
+  private HistoryQuery middleHour;
+
+  @Override
+  public void open(String format, int records) throws IOException, InterruptedException {
+    historyFormat = HistoryFormat.valueOf(format);
+    directory = BenchmarkFiles.createDirectory("scan-benchmark");
+    file = directory.resolve(historyFormat.getDefaultFileName());
+    try (HistoryJournal journal = new HistoryJournal(file, historyFormat)) {
+      int currencies = CurrencyEnum.count();
+      for (int i = 0; i < records; i++) {
+        int source = i % currencies;
+        int target = (source + 1 + (i / currencies) % (currencies - 2)) % currencies;
+        double amount = 10 + (i & 1023) * 0.25;
+        journal.append(START_MILLIS + i * STEP_MILLIS, amount, CurrencyEnum.byOrdinal(source),
+            CurrencyEnum.byOrdinal(target), amount * 0.85, 1 + i / 1_000_000);
+      }
+    }
+    history = new ExchangeHistory(file, historyFormat);
+    missingPair = HistoryQuery.all()
+        .source(CurrencyEnum.byOrdinal(0))
+        .target(CurrencyEnum.byOrdinal(previousCurrency(0)));
+    long middle = START_MILLIS + records / 2 * STEP_MILLIS;
+    middleHour = HistoryQuery.all().from(new Date(middle)).to(new Date(middle + HOUR_MILLIS - 1));
+    middleDay = Math.floorDiv(middle, DAY_MILLIS) * DAY_MILLIS;
+    aggregates = HistoryAggregates.recover(file, historyFormat,
+        HistoryAggregates.DEFAULT_BUCKET_MILLIS);
+  }
+
+  @Override
+  public int tailLatest(int count) throws IOException {
+    return history.tail(HistoryQuery.all(), count).size();
+  }
+
+  @Override
+  public int tailMissingPair(int count) throws IOException {
+    return history.tail(missingPair, count).size();
+  }
+
+  @Override
+  public int searchMissingPair() throws IOException {
+    return history.search(missingPair).size();
+  }
+
+  @Override
+  public int searchHour() throws IOException {
+    return history.search(middleHour).size();
+  }
+
+  @Override
+  public long streamAll() throws IOException {
+    try (Stream<ExchangeRecord> records = history.stream(HistoryQuery.all())) {
+      return records.count();
+    }
+  }
+
+  @Override
+  public long streamHour() throws IOException {
+    try (Stream<ExchangeRecord> records = history.stream(middleHour)) {
+      return records.count();
+    }
+  }
+
+  @Override
+  public long pairTotalsDay() {
+    return aggregates.totals(CurrencyEnum.byOrdinal(0), CurrencyEnum.byOrdinal(1), middleDay,
+        middleDay + DAY_MILLIS).getCount();
+  }
+
+  @Override
+  public long recoverAggregates() throws IOException {
+    return HistoryAggregates.recover(file, historyFormat, HistoryAggregates.DEFAULT_BUCKET_MILLIS)
+        .getLogLength();
+  }
+
+  @Override
+  public void close() throws IOException {
+    BenchmarkFiles.delete(directory);
+  }
+
+  // Валюта, предшествующая валюте ordinal по кругу (такие пары журнал не содержит)
+  private static int previousCurrency(int ordinal) {
+    return (ordinal + CurrencyEnum.count() - 1) % CurrencyEnum.count();
+  }
+}
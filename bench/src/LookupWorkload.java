@@ -0,0 +1,32 @@
+/* Класс LookupWorkload - нагрузка для bench.LookupBenchmark.
+   Вызывает ExchangeManager.getCurrencyByAbbreviation, доступный только в пакете по умолчанию.
+ */
+public class LookupWorkload implements bench.LookupBenchmark.Workload {
+
+  @Override
+  public Object lookup(String abbreviation) {
+    try {
+      return ExchangeManager.getCurrencyByAbbreviation(abbreviation);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  @Override
+  public String[] codes() {
+    String[] codes = new String[CurrencyEnum.count()];
+    for (int i = 0; i < codes.length; i++) {
+      codes[i] = CurrencyEnum.byOrdinal(i).name();
+    }
+    return codes;
+  }
+
+  @Override
+  public String[] descriptions() {
+    String[] descriptions = new String[CurrencyEnum.count()];
+    for (int i = 0; i < descriptions.length; i++) {
+      descriptions[i] = CurrencyEnum.byOrdinal(i).getDescription();
+    }
+    return descriptions;
+  }
+}
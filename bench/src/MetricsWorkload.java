@@ -0,0 +1,50 @@
+import java.io.IOException;
+import java.nio.file.Path;
+
+/* Класс MetricsWorkload - нагрузка для bench.MetricsBenchmark.
+   Менеджер обмена пишет историю в двоичный журнал во временном каталоге;
+   валюты и суммы зависят от номера операции.
+ */
+public class MetricsWorkload implements bench.MetricsBenchmark.Workload {
+
+  private Path directory;
+  private ExchangeManager exchangeManager;
+  private ExchangeMetrics metrics;
+  private RateSnapshot snapshot;
+
+  @Override
+  public void open(boolean enabled) throws IOException {
+    directory = BenchmarkFiles.createDirectory("metrics-benchmark");
+    metrics = new ExchangeMetrics(enabled);
+    exchangeManager = new ExchangeManager(directory.resolve("history.bin"), HistoryFormat.BINARY,
+        metrics);
+    snapshot = exchangeManager.getRateSnapshot();
+  }
+
+  @Override
+  public double exchange(long sequence) throws InterruptedException {
+    return exchangeManager.exchange(snapshot, System.currentTimeMillis(), 10 + (sequence & 1023),
+        source(sequence), target(sequence));
+  }
+
+  @Override
+  public long instrumentation(long sequence) {
+    long startNanos = metrics.startTimer();
+    metrics.recordConversion(source(sequence), target(sequence), startNanos);
+    return startNanos;
+  }
+
+  @Override
+  public void close() throws IOException {
+    exchangeManager.close();
+    BenchmarkFiles.delete(directory);
+  }
+
+  private static CurrencyEnum source(long sequence) {
+    return CurrencyEnum.byOrdinal((int) (sequence % CurrencyEnum.count()));
+  }
+
+  private static CurrencyEnum target(long sequence) {
+    return CurrencyEnum.byOrdinal((int) ((sequence + 1) % CurrencyEnum.count()));
+  }
+}
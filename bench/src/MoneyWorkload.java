@@ -0,0 +1,89 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.Map;
+
+/* Класс MoneyWorkload - нагрузка для bench.MoneyBenchmark.
+   Курсы - те же, что задает ExchangeManager при запуске; суммы заявок - от 0.01 до 10 млн
+   с двумя знаками после запятой. Для запасного пути берутся суммы около 10^17 центов и пары,
+   у которых числитель дроби кросс-курса велик (USD -> CZK: 221/10, GBP -> CZK: 2210/73),
+   так что произведение переполняет long, а результат еще помещается в него.
+ */
+public class MoneyWorkload implements bench.MoneyBenchmark.Workload {
+
+  private static final RoundingMode ROUNDING = RoundingMode.HALF_EVEN;
+
+  private final RateSnapshot snapshot;
+  // Курсы к базовой валюте в BigDecimal для наивного пути
+  private final BigDecimal[] decimalRates = new BigDecimal[CurrencyEnum.count()];
+  private final double[] amounts = new double[bench.MoneyBenchmark.REQUESTS];
+  private final long[] amountsMinor = new long[bench.MoneyBenchmark.REQUESTS];
+  private final long[] largeAmountsMinor = new long[bench.MoneyBenchmark.REQUESTS];
+  private final CurrencyEnum[] sources = new CurrencyEnum[bench.MoneyBenchmark.REQUESTS];
+  private final CurrencyEnum[] targets = new CurrencyEnum[bench.MoneyBenchmark.REQUESTS];
+  private final CurrencyEnum[] largeSources = new CurrencyEnum[bench.MoneyBenchmark.REQUESTS];
+  private final CurrencyEnum[] largeTargets = new CurrencyEnum[bench.MoneyBenchmark.REQUESTS];
+
+  public MoneyWorkload() {
+    Map<CurrencyEnum, Double> rates = new HashMap<>();
+    rates.put(CurrencyEnum.USD, 1.0);
+    rates.put(CurrencyEnum.EUR, 0.85);
+    rates.put(CurrencyEnum.GBP, 0.73);
+    rates.put(CurrencyEnum.CHF, 1.08);
+    rates.put(CurrencyEnum.PLN, 3.95);
+    rates.put(CurrencyEnum.CZK, 22.10);
+    snapshot = RateSnapshot.initial(rates);
+    for (Map.Entry<CurrencyEnum, Double> entry : rates.entrySet()) {
+      decimalRates[entry.getKey().ordinal()] = BigDecimal.valueOf(entry.getValue());
+    }
+    CurrencyEnum[][] overflowPairs = {
+        {CurrencyEnum.USD, CurrencyEnum.CZK}, {CurrencyEnum.GBP, CurrencyEnum.CZK},
+        {CurrencyEnum.CHF, CurrencyEnum.CZK}, {CurrencyEnum.GBP, CurrencyEnum.PLN},
+        {CurrencyEnum.EUR, CurrencyEnum.CHF}, {CurrencyEnum.PLN, CurrencyEnum.CHF}};
+    long seed = 12345;
+    for (int i = 0; i < amounts.length; i++) {
+      seed = seed * 6364136223846793005L + 1442695040888963407L;
+      amountsMinor[i] = 1 + (seed >>> 1) % 1_000_000_000L;
+      amounts[i] = amountsMinor[i] / 100.0;
+      largeAmountsMinor[i] = 100_000_000_000_000_000L + amountsMinor[i];
+      largeSources[i] = overflowPairs[i % overflowPairs.length][0];
+      largeTargets[i] = overflowPairs[i % overflowPairs.length][1];
+      sources[i] = CurrencyEnum.byOrdinal(i % CurrencyEnum.count());
+      targets[i] = CurrencyEnum.byOrdinal((i * 7 + 3) % CurrencyEnum.count());
+    }
+  }
+
+  @Override
+  public double doubleRate(int request) {
+    return snapshot.convert(amounts[request], sources[request], targets[request]);
+  }
+
+  @Override
+  public long fixedPoint(int request) {
+    return snapshot.convertMinorUnits(amountsMinor[request], sources[request], targets[request],
+        ROUNDING);
+  }
+
+  @Override
+  public double fixedPointFromDouble(int request) {
+    CurrencyEnum source = sources[request];
+    CurrencyEnum target = targets[request];
+    long amountMinor = MoneyMath.toMinorUnits(amounts[request], source, ROUNDING);
+    return MoneyMath.toAmount(snapshot.convertMinorUnits(amountMinor, source, target, ROUNDING),
+        target);
+  }
+
+  @Override
+  public long fixedPointOverflow(int request) {
+    return snapshot.convertMinorUnits(largeAmountsMinor[request], largeSources[request],
+        largeTargets[request], ROUNDING);
+  }
+
+  @Override
+  public Object naiveBigDecimal(int request) {
+    CurrencyEnum target = targets[request];
+    return BigDecimal.valueOf(amounts[request])
+        .multiply(decimalRates[target.ordinal()])
+        .divide(decimalRates[sources[request].ordinal()], target.getMinorUnits(), ROUNDING);
+  }
+}
@@ -0,0 +1,42 @@
+import java.nio.ByteBuffer;
+
+/* Класс RecordFormatWorkload - нагрузка для bench.RecordFormatBenchmark.
+   Суммы записей дробные и разного порядка, чтобы форматирование проходило по всем веткам
+   округления; буфер кодирования выделяется один раз, как у потока-писателя журнала.
+ */
+public class RecordFormatWorkload implements bench.RecordFormatBenchmark.Workload {
+
+  private final ExchangeRecord[] records = new ExchangeRecord[bench.RecordFormatBenchmark.RECORDS];
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(HistoryFormat.MAX_ENCODED_SIZE);
+
+  public RecordFormatWorkload() {
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < records.length; i++) {
+      double amount = (i + 1) * 13.37 * Math.pow(10, i % 5);
+      records[i] = new ExchangeRecord(now + i * 1000L, amount,
+          CurrencyEnum.byOrdinal(i % CurrencyEnum.count()),
+          CurrencyEnum.byOrdinal((i + 1) % CurrencyEnum.count()), amount * 0.85, 1 + i % 3);
+    }
+  }
+
+  @Override
+  public String format(int record) {
+    return records[record].toString();
+  }
+
+  @Override
+  public int encodeText(int record) {
+    return encode(HistoryFormat.TEXT, records[record]);
+  }
+
+  @Override
+  public int encodeBinary(int record) {
+    return encode(HistoryFormat.BINARY, records[record]);
+  }
+
+  private int encode(HistoryFormat format, ExchangeRecord exchangeRecord) {
+    buffer.clear();
+    format.encode(exchangeRecord, buffer);
+    return buffer.position();
+  }
+}
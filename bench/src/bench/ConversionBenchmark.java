@@ -0,0 +1,88 @@
+package bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/* Класс ConversionBenchmark измеряет пересчет суммы из одной валюты в другую:
+   прежний путь через HashMap<CurrencyEnum, Double> (containsKey + два get + деление),
+   матрицу кросс-курсов CrossRateMatrix, снимок курсов RateSnapshot
+   и ExchangeManager.convert (чтение текущего снимка + матрица).
+   Пары валют перебираются по кругу из заранее построенной таблицы PAIRS пар.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConversionBenchmark {
+
+  // Количество пар валют в таблице (степень двойки)
+  public static final int PAIRS = 1024;
+
+  // Пересчет суммы для пары с номером pair из таблицы (реализация - ConversionWorkload)
+  public interface Workload extends AutoCloseable {
+    double viaMap(double amount, int pair);
+
+    double viaMatrix(double amount, int pair);
+
+    double viaSnapshot(double amount, int pair);
+
+    double viaManager(double amount, int pair);
+
+    // Сужает AutoCloseable.close(): закрытие не выбрасывает InterruptedException
+    @Override
+    void close() throws IOException;
+  }
+
+  private Workload workload;
+  // Номер текущей пары
+  private int pair;
+
+  @Setup
+  public void setUp() {
+    workload = Workloads.create("ConversionWorkload", Workload.class);
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    workload.close();
+  }
+
+  @Benchmark
+  public double hashMap() {
+    return workload.viaMap(nextPair(), pair);
+  }
+
+  @Benchmark
+  public double crossRateMatrix() {
+    return workload.viaMatrix(nextPair(), pair);
+  }
+
+  @Benchmark
+  public double rateSnapshot() {
+    return workload.viaSnapshot(nextPair(), pair);
+  }
+
+  @Benchmark
+  public double exchangeManager() {
+    return workload.viaManager(nextPair(), pair);
+  }
+
+  // Переходит к следующей паре; ее номер служит и суммой обмена
+  private int nextPair() {
+    pair = (pair + 1) & (PAIRS - 1);
+    return pair;
+  }
+}
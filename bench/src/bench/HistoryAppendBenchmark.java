@@ -0,0 +1,72 @@
+package bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/* Класс HistoryAppendBenchmark измеряет пропускную способность журнала истории HistoryJournal:
+   сколько записей в секунду принимает append. Кольцевой буфер журнала ограничен,
+   поэтому при долгом замере скорость append упирается в скорость потока-писателя и диска.
+   Журнал пересоздается на каждую итерацию, чтобы файл не разрастался на весь прогон;
+   закрытие журнала (сброс остатка очереди) в замер не входит.
+   Несколько производителей: gradle :bench:jmh -Pjmh='HistoryAppend -t 4'
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HistoryAppendBenchmark {
+
+  // Запись в журнал (реализация - HistoryAppendWorkload)
+  public interface Workload extends AutoCloseable {
+    void open(String format) throws Exception;
+
+    void append(long sequence) throws InterruptedException;
+
+    // Сужает AutoCloseable.close(): закрытие не выбрасывает InterruptedException
+    @Override
+    void close() throws IOException;
+  }
+
+  // Формат файла журнала: TEXT или BINARY
+  @Param({"TEXT", "BINARY"})
+  public String format;
+
+  private Workload workload;
+
+  // Номер записи в пределах потока бенчмарка
+  @State(Scope.Thread)
+  public static class Sequence {
+    long next;
+  }
+
+  @Setup(Level.Iteration)
+  public void setUp() throws Exception {
+    workload = Workloads.create("HistoryAppendWorkload", Workload.class);
+    workload.open(format);
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDown() throws Exception {
+    workload.close();
+  }
+
+  @Benchmark
+  public void append(Sequence sequence) throws InterruptedException {
+    workload.append(sequence.next++);
+  }
+}
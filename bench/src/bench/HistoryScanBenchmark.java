@@ -0,0 +1,135 @@
+package bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/* Класс HistoryScanBenchmark измеряет чтение истории по синтетическим журналам
+   из 1 и 10 миллионов записей в текстовом и двоичном формате.
+   Журнал создается один раз на прогон через HistoryJournal, поэтому он разбит на сегменты
+   (закрытые сегменты сжаты GZIP) и рядом с ним появляется индекс по времени. Замеряются:
+   - tailLatest: то, что делает пункт меню "Просмотреть историю обменов" без фильтров
+     (ExchangeManager.viewExchangeHistoryFromFile -> ExchangeHistory.tail, последние 20 записей);
+   - tailMissingPair: тот же просмотр для пары валют, которой нет в журнале, -
+     худший случай, когда журнал читается целиком (сегменты - параллельными волнами);
+   - searchMissingPair: поиск той же пары через ExchangeHistory.search - все сегменты
+     параллельно в ForkJoinPool со слиянием по дате;
+   - searchHour: тот же поиск за один час из середины журнала (сегменты читаются
+     с перехода по индексу членов GZIP, как в streamHour);
+   - streamAll: последовательный проход по всему журналу;
+   - streamHour: выборка за один час из середины журнала (с переходом по индексу);
+   - pairTotalsDay: оборот одной пары валют за сутки по накопительным итогам HistoryAggregates
+     (для сравнения со streamHour - без чтения журнала);
+   - recoverAggregates: восстановление итогов при запуске из контрольной точки, которую журнал
+     сохранил при закрытии (хвоста после нее нет, поэтому журнал не читается).
+   Журнал из 10 млн записей в текстовом формате занимает около гигабайта;
+   каталог для него задается свойством -Dbench.dir (по умолчанию java.io.tmpdir).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HistoryScanBenchmark {
+
+  // Сколько последних записей показывает просмотр истории по умолчанию
+  public static final int TAIL = 20;
+
+  // Чтение синтетического журнала (реализация - HistoryScanWorkload)
+  public interface Workload extends AutoCloseable {
+    void open(String format, int records) throws Exception;
+
+    int tailLatest(int count) throws Exception;
+
+    int tailMissingPair(int count) throws Exception;
+
+    int searchMissingPair() throws Exception;
+
+    int searchHour() throws Exception;
+
+    long streamAll() throws Exception;
+
+    long streamHour() throws Exception;
+
+    long pairTotalsDay() throws Exception;
+
+    long recoverAggregates() throws Exception;
+
+    // Сужает AutoCloseable.close(): закрытие не выбрасывает InterruptedException
+    @Override
+    void close() throws IOException;
+  }
+
+  // Количество записей в журнале
+  @Param({"1000000", "10000000"})
+  public int records;
+
+  // Формат файла журнала: TEXT или BINARY
+  @Param({"TEXT", "BINARY"})
+  public String format;
+
+  private Workload workload;
+
+  @Setup
+  public void setUp() throws Exception {
+    workload = Workloads.create("HistoryScanWorkload", Workload.class);
+    workload.open(format, records);
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    workload.close();
+  }
+
+  @Benchmark
+  public int tailLatest() throws Exception {
+    return workload.tailLatest(TAIL);
+  }
+
+  @Benchmark
+  public int tailMissingPair() throws Exception {
+    return workload.tailMissingPair(TAIL);
+  }
+
+  @Benchmark
+  public int searchMissingPair() throws Exception {
+    return workload.searchMissingPair();
+  }
+
+  @Benchmark
+  public int searchHour() throws Exception {
+    return workload.searchHour();
+  }
+
+  @Benchmark
+  public long streamAll() throws Exception {
+    return workload.streamAll();
+  }
+
+  @Benchmark
+  public long streamHour() throws Exception {
+    return workload.streamHour();
+  }
+
+  @Benchmark
+  public long pairTotalsDay() throws Exception {
+    return workload.pairTotalsDay();
+  }
+
+  @Benchmark
+  public long recoverAggregates() throws Exception {
+    return workload.recoverAggregates();
+  }
+}
@@ -0,0 +1,85 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/* Класс LookupBenchmark измеряет поиск валюты ExchangeManager.getCurrencyByAbbreviation
+   по коду ("USD"), по коду в нижнем регистре ("usd"), по описанию в том виде,
+   в котором его передает консольное меню (в верхнем регистре), и неудачный поиск,
+   который заканчивается исключением IllegalArgumentException.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LookupBenchmark {
+
+  // Поиск валюты по строке (реализация - LookupWorkload)
+  public interface Workload {
+    // Возвращает найденную валюту или null, если поиск закончился исключением
+    Object lookup(String abbreviation);
+
+    String[] codes();
+
+    String[] descriptions();
+  }
+
+  private Workload workload;
+  private String[] codes;
+  private String[] lowerCaseCodes;
+  private String[] descriptions;
+  private String[] unknown;
+  // Номер текущей строки поиска
+  private int index;
+
+  @Setup
+  public void setUp() {
+    workload = Workloads.create("LookupWorkload", Workload.class);
+    codes = workload.codes();
+    descriptions = workload.descriptions();
+    lowerCaseCodes = new String[codes.length];
+    unknown = new String[codes.length];
+    for (int i = 0; i < codes.length; i++) {
+      lowerCaseCodes[i] = codes[i].toLowerCase();
+      descriptions[i] = descriptions[i].toUpperCase();
+      unknown[i] = codes[i] + "X";
+    }
+  }
+
+  @Benchmark
+  public Object byCode() {
+    return workload.lookup(next(codes));
+  }
+
+  @Benchmark
+  public Object byLowerCaseCode() {
+    return workload.lookup(next(lowerCaseCodes));
+  }
+
+  @Benchmark
+  public Object byDescription() {
+    return workload.lookup(next(descriptions));
+  }
+
+  @Benchmark
+  public Object unknownCurrency() {
+    return workload.lookup(next(unknown));
+  }
+
+  // Следующая строка поиска по кругу
+  private String next(String[] inputs) {
+    index = index + 1 == inputs.length ? 0 : index + 1;
+    return inputs[index];
+  }
+}
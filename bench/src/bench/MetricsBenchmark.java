@@ -0,0 +1,80 @@
+package bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/* Класс MetricsBenchmark измеряет накладные расходы метрик ExchangeMetrics:
+   - exchange: полный обмен ExchangeManager.exchange с записью в двоичный журнал
+     при включенных и отключенных метриках;
+   - instrumentation: только сами метрики обмена - замер времени и счетчик пары.
+   Разница между enabled=true и enabled=false и есть цена метрик.
+   Конкуренция потоков за счетчики: gradle :bench:jmh -Pjmh='Metrics -t 4'
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+
+  // Обмен с метриками (реализация - MetricsWorkload)
+  public interface Workload extends AutoCloseable {
+    void open(boolean enabled) throws Exception;
+
+    double exchange(long sequence) throws InterruptedException;
+
+    long instrumentation(long sequence);
+
+    // Сужает AutoCloseable.close(): закрытие не выбрасывает InterruptedException
+    @Override
+    void close() throws IOException;
+  }
+
+  // Включены ли замеры задержек и счетчики пар
+  @Param({"true", "false"})
+  public boolean enabled;
+
+  private Workload workload;
+
+  // Номер операции в пределах потока бенчмарка
+  @State(Scope.Thread)
+  public static class Sequence {
+    long next;
+  }
+
+  // Журнал пересоздается на каждую итерацию, чтобы файл не разрастался на весь прогон
+  @Setup(Level.Iteration)
+  public void setUp() throws Exception {
+    workload = Workloads.create("MetricsWorkload", Workload.class);
+    workload.open(enabled);
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDown() throws Exception {
+    workload.close();
+  }
+
+  @Benchmark
+  public double exchange(Sequence sequence) throws InterruptedException {
+    return workload.exchange(sequence.next++);
+  }
+
+  @Benchmark
+  public long instrumentation(Sequence sequence) {
+    return workload.instrumentation(sequence.next++);
+  }
+}
@@ -0,0 +1,86 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/* Класс MoneyBenchmark сравнивает способы пересчета суммы:
+   - doubleRate: прежний путь amount * кросс-курс в double (с двоичной погрешностью);
+   - fixedPoint: точный пересчет суммы в центах через FixedPointRateMatrix;
+   - fixedPointFromDouble: то, что делает обмен ExchangeManager.exchange, - перевод суммы double
+     в центы, точный пересчет и перевод результата обратно в double;
+   - fixedPointOverflow: точный пересчет сумм, произведение которых переполняет long
+     (запасной путь через BigDecimal);
+   - naiveBigDecimal: расчет целиком в BigDecimal (amount * targetRate / sourceRate с округлением).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoneyBenchmark {
+
+  // Количество заранее созданных заявок (степень двойки)
+  public static final int REQUESTS = 1024;
+
+  // Пересчет заявки с номером request (реализация - MoneyWorkload)
+  public interface Workload {
+    double doubleRate(int request);
+
+    long fixedPoint(int request);
+
+    double fixedPointFromDouble(int request);
+
+    long fixedPointOverflow(int request);
+
+    Object naiveBigDecimal(int request);
+  }
+
+  private Workload workload;
+  // Номер текущей заявки
+  private int request;
+
+  @Setup
+  public void setUp() {
+    workload = Workloads.create("MoneyWorkload", Workload.class);
+  }
+
+  @Benchmark
+  public double doubleRate() {
+    return workload.doubleRate(nextRequest());
+  }
+
+  @Benchmark
+  public long fixedPoint() {
+    return workload.fixedPoint(nextRequest());
+  }
+
+  @Benchmark
+  public double fixedPointFromDouble() {
+    return workload.fixedPointFromDouble(nextRequest());
+  }
+
+  @Benchmark
+  public long fixedPointOverflow() {
+    return workload.fixedPointOverflow(nextRequest());
+  }
+
+  @Benchmark
+  public Object naiveBigDecimal() {
+    return workload.naiveBigDecimal(nextRequest());
+  }
+
+  private int nextRequest() {
+    request = (request + 1) & (REQUESTS - 1);
+    return request;
+  }
+}
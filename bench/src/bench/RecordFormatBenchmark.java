@@ -0,0 +1,68 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/* Класс RecordFormatBenchmark измеряет форматирование записи истории:
+   ExchangeRecord.toString (вывод истории на экран) и кодирование полей записи
+   в байтовый буфер в текстовом и двоичном формате (путь потока-писателя журнала).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RecordFormatBenchmark {
+
+  // Количество заранее созданных записей (степень двойки)
+  public static final int RECORDS = 1024;
+
+  // Форматирование записи с номером record (реализация - RecordFormatWorkload)
+  public interface Workload {
+    String format(int record);
+
+    // Возвращает количество байт, записанных в буфер
+    int encodeText(int record);
+
+    int encodeBinary(int record);
+  }
+
+  private Workload workload;
+  // Номер текущей записи
+  private int record;
+
+  @Setup
+  public void setUp() {
+    workload = Workloads.create("RecordFormatWorkload", Workload.class);
+  }
+
+  @Benchmark
+  public String recordToString() {
+    return workload.format(nextRecord());
+  }
+
+  @Benchmark
+  public int encodeText() {
+    return workload.encodeText(nextRecord());
+  }
+
+  @Benchmark
+  public int encodeBinary() {
+    return workload.encodeBinary(nextRecord());
+  }
+
+  private int nextRecord() {
+    record = (record + 1) & (RECORDS - 1);
+    return record;
+  }
+}
@@ -0,0 +1,23 @@
+package bench;
+
+/* Класс Workloads создает нагрузки для бенчмарков.
+   Классы приложения лежат в пакете по умолчанию, к которому нельзя обратиться из именованного
+   пакета, а JMH не принимает бенчмарки из пакета по умолчанию. Поэтому каждый бенчмарк
+   объявляет интерфейс Workload, а реализация в пакете по умолчанию загружается по имени класса.
+   У каждого интерфейса ровно одна реализация, так что JIT встраивает вызовы через интерфейс
+   и они не искажают замеры.
+ */
+final class Workloads {
+
+  private Workloads() {
+  }
+
+  // Создает нагрузку className и приводит ее к интерфейсу type
+  static <T> T create(String className, Class<T> type) {
+    try {
+      return type.cast(Class.forName(className).getDeclaredConstructor().newInstance());
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Не удалось создать нагрузку " + className, e);
+    }
+  }
+}
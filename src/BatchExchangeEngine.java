@@ -0,0 +1,99 @@
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/* Класс BatchExchangeEngine выполняет пакетный пересчет валют без консольного ввода-вывода.
+   Он предназначен для повторного проигрывания больших файлов сверки: на вход подается массив,
+   список или поток заявок ConversionRequest, на выходе - массив результатов в том же порядке.
+   Для пересчета используется та же таблица курсов и та же логика, что и в ExchangeManager.
+ */
+public class BatchExchangeEngine {
+
+  // Менеджер, который хранит текущий снимок курсов
+  private final ExchangeManager exchangeManager;
+
+  public BatchExchangeEngine(ExchangeManager exchangeManager) {
+    this.exchangeManager = exchangeManager;
+  }
+
+  // Последовательный пересчет массива заявок.
+  // Результат с индексом i соответствует заявке requests[i].
+  // Отрицательная или нечисловая (NaN, бесконечность) сумма и неизвестная валюта приводят
+  // к IllegalArgumentException, так же как и при консольном обмене.
+  // Весь пакет пересчитывается по одному снимку курсов, даже если курсы обновились во время пересчета.
+  public double[] convertAll(ConversionRequest[] requests) {
+    RateSnapshot snapshot = exchangeManager.getRateSnapshot();
+    double[] results = new double[requests.length];
+    for (int i = 0; i < requests.length; i++) {
+      results[i] = convertOne(snapshot, requests[i]);
+    }
+    return results;
+  }
+
+  // Параллельный пересчет массива заявок: индексы распределяются между ядрами
+  // через общий ForkJoinPool, каждый поток пишет только в свою ячейку массива результатов.
+  public double[] convertAllParallel(ConversionRequest[] requests) {
+    RateSnapshot snapshot = exchangeManager.getRateSnapshot();
+    double[] results = new double[requests.length];
+    IntStream.range(0, requests.length)
+        .parallel()
+        .forEach(i -> results[i] = convertOne(snapshot, requests[i]));
+    return results;
+  }
+
+  // Пересчет списка заявок; parallel задает параллельный режим.
+  public double[] convertAll(List<ConversionRequest> requests, boolean parallel) {
+    ConversionRequest[] array = requests.toArray(new ConversionRequest[0]);
+    return parallel ? convertAllParallel(array) : convertAll(array);
+  }
+
+  // Пересчет потока заявок (например, строк файла сверки, прочитанных через Files.lines).
+  // Порядок результатов совпадает с порядком встречи элементов в потоке;
+  // параллельный режим включается вызовом parallel() на переданном потоке.
+  public double[] convertAll(Stream<ConversionRequest> requests) {
+    RateSnapshot snapshot = exchangeManager.getRateSnapshot();
+    return requests.mapToDouble(request -> convertOne(snapshot, request)).toArray();
+  }
+
+  // Точный пересчет массива заявок для сверки: результат с индексом i - сумма заявки requests[i]
+  // в минимальных единицах (центах) целевой валюты, округленная режимом округления менеджера
+  // (см. MoneyMath и FixedPointRateMatrix). parallel задает параллельный режим.
+  public long[] convertAllMinorUnits(ConversionRequest[] requests, boolean parallel) {
+    RateSnapshot snapshot = exchangeManager.getRateSnapshot();
+    RoundingMode roundingMode = exchangeManager.getRoundingMode();
+    long[] results = new long[requests.length];
+    IntStream indexes = IntStream.range(0, requests.length);
+    (parallel ? indexes.parallel() : indexes)
+        .forEach(i -> results[i] = convertOneMinorUnits(snapshot, roundingMode, requests[i]));
+    return results;
+  }
+
+  // Пересчет одной заявки с той же проверкой суммы, что и в performExchange
+  private static double convertOne(RateSnapshot snapshot, ConversionRequest request) {
+    validateAmount(request.getAmount());
+    return snapshot.convert(request.getAmount(), request.getSourceCurrency(),
+        request.getTargetCurrency());
+  }
+
+  // Точный пересчет одной заявки в минимальные единицы целевой валюты
+  private static long convertOneMinorUnits(RateSnapshot snapshot, RoundingMode roundingMode,
+      ConversionRequest request) {
+    validateAmount(request.getAmount());
+    long amountMinor = MoneyMath.toMinorUnits(request.getAmount(), request.getSourceCurrency(),
+        roundingMode);
+    return snapshot.convertMinorUnits(amountMinor, request.getSourceCurrency(),
+        request.getTargetCurrency(), roundingMode);
+  }
+
+  // Сумма заявки должна быть конечным неотрицательным числом: NaN и бесконечность
+  // отклоняются так же, как при пересчете в минимальные единицы (MoneyMath.toMinorUnits)
+  private static void validateAmount(double amount) {
+    if (Double.isNaN(amount) || Double.isInfinite(amount)) {
+      throw new IllegalArgumentException("Неверная сумма: " + amount);
+    }
+    if (amount < 0) {
+      throw new IllegalArgumentException("Сумма для обмена не может быть отрицательной.");
+    }
+  }
+}
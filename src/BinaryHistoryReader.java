@@ -0,0 +1,82 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/* Класс BinaryHistoryReader читает двоичный журнал истории (формат HistoryFormat.BINARY)
+   через отображение файла в память (FileChannel.map). Записи имеют фиксированную длину,
+   поэтому поля читаются прямо из отображенного буфера по смещению - без построения строк
+   и без промежуточных объектов. Файлы больше 2 ГБ отображаются частями,
+   каждая часть содержит целое число записей.
+ */
+public class BinaryHistoryReader implements Closeable {
+
+  // Максимальный размер одной отображаемой части, кратный длине записи
+  private static final long MAX_CHUNK_SIZE =
+      (Integer.MAX_VALUE / HistoryFormat.RECORD_SIZE) * (long) HistoryFormat.RECORD_SIZE;
+
+  // Интерфейс для обработки записей без создания объектов ExchangeRecord
+  @FunctionalInterface
+  public interface RecordVisitor {
+    void visit(long epochMillis, double amount, CurrencyEnum sourceCurrency,
+        CurrencyEnum targetCurrency, double resultAmount, int rateVersion);
+  }
+
+  // Канал файла журнала
+  private final FileChannel channel;
+  // Количество целых записей в файле (недописанный хвост игнорируется)
+  private final long recordCount;
+
+  public BinaryHistoryReader(Path file) throws IOException {
+    this.channel = FileChannel.open(file, StandardOpenOption.READ);
+    this.recordCount = channel.size() / HistoryFormat.RECORD_SIZE;
+  }
+
+  public long size() {
+    return recordCount;
+  }
+
+  // Последовательно обходит записи с номерами [from, to) и передает их поля посетителю
+  public void scan(long from, long to, RecordVisitor visitor) throws IOException {
+    long position = from * HistoryFormat.RECORD_SIZE;
+    long end = Math.min(to, recordCount) * HistoryFormat.RECORD_SIZE;
+    while (position < end) {
+      long chunkSize = Math.min(MAX_CHUNK_SIZE, end - position);
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, chunkSize);
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+      for (int offset = 0; offset < chunkSize; offset += HistoryFormat.RECORD_SIZE) {
+        visitor.visit(buffer.getLong(offset + HistoryFormat.EPOCH_MILLIS_OFFSET),
+            buffer.getDouble(offset + HistoryFormat.AMOUNT_OFFSET),
+            CurrencyEnum.byOrdinal(buffer.getShort(offset + HistoryFormat.SOURCE_OFFSET)),
+            CurrencyEnum.byOrdinal(buffer.getShort(offset + HistoryFormat.TARGET_OFFSET)),
+            buffer.getDouble(offset + HistoryFormat.RESULT_OFFSET),
+            buffer.getInt(offset + HistoryFormat.RATE_VERSION_OFFSET));
+      }
+      position += chunkSize;
+    }
+  }
+
+  // Обходит все записи файла
+  public void scan(RecordVisitor visitor) throws IOException {
+    scan(0, recordCount, visitor);
+  }
+
+  // Читает одну запись по номеру в виде объекта ExchangeRecord
+  public ExchangeRecord get(long index) throws IOException {
+    if (index < 0 || index >= recordCount) {
+      throw new IndexOutOfBoundsException("Нет записи с номером " + index);
+    }
+    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+        index * HistoryFormat.RECORD_SIZE, HistoryFormat.RECORD_SIZE);
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    return HistoryFormat.decodeBinary(buffer, 0);
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
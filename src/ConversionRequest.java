@@ -0,0 +1,36 @@
+// Класс ConversionRequest описывает одну заявку на пересчет для пакетного движка BatchExchangeEngine:
+// сумму, исходную валюту и целевую валюту. Объекты неизменяемы, поэтому их можно
+// безопасно обрабатывать из нескольких потоков в параллельном режиме.
+public class ConversionRequest {
+
+  // Сумма в исходной валюте
+  private final double amount;
+  // Исходная валюта заявки
+  private final CurrencyEnum sourceCurrency;
+  // Целевая валюта заявки
+  private final CurrencyEnum targetCurrency;
+
+  public ConversionRequest(double amount, CurrencyEnum sourceCurrency,
+      CurrencyEnum targetCurrency) {
+    this.amount = amount;
+    this.sourceCurrency = sourceCurrency;
+    this.targetCurrency = targetCurrency;
+  }
+
+  public double getAmount() {
+    return amount;
+  }
+
+  public CurrencyEnum getSourceCurrency() {
+    return sourceCurrency;
+  }
+
+  public CurrencyEnum getTargetCurrency() {
+    return targetCurrency;
+  }
+
+  @Override
+  public String toString() {
+    return amount + " " + sourceCurrency + " -> " + targetCurrency;
+  }
+}
@@ -0,0 +1,55 @@
+import java.util.Map;
+
+/* Класс CrossRateMatrix хранит заранее рассчитанные кросс-курсы для всех пар валют
+   в плоском примитивном массиве double размером N×N, где N - количество значений CurrencyEnum.
+   Ячейка с индексом source.ordinal() * N + target.ordinal() содержит множитель targetRate / sourceRate,
+   поэтому пересчет суммы сводится к одному чтению из массива и одному умножению -
+   без упаковки Double и без хеширования ключей HashMap.
+   Объект неизменяем: при изменении курсов строится новая матрица, а старая продолжает
+   безопасно использоваться потоками, которые успели её прочитать.
+ */
+public final class CrossRateMatrix {
+
+  // Количество валют - размер одной строки матрицы
+  private static final int SIZE = CurrencyEnum.values().length;
+
+  // Плоская матрица кросс-курсов; NaN означает, что для пары нет курса
+  private final double[] crossRates;
+
+  private CrossRateMatrix(double[] crossRates) {
+    this.crossRates = crossRates;
+  }
+
+  // Строит матрицу из таблицы курсов к базовой валюте (в формате exchangeRates из ExchangeManager).
+  // Для валют, которых нет в таблице, вся строка и весь столбец заполняются NaN.
+  public static CrossRateMatrix fromRates(Map<CurrencyEnum, Double> rates) {
+    CurrencyEnum[] currencies = CurrencyEnum.values();
+    double[] baseRates = new double[SIZE];
+    for (CurrencyEnum currency : currencies) {
+      Double rate = rates.get(currency);
+      baseRates[currency.ordinal()] = rate == null ? Double.NaN : rate;
+    }
+    double[] crossRates = new double[SIZE * SIZE];
+    for (int source = 0; source < SIZE; source++) {
+      for (int target = 0; target < SIZE; target++) {
+        crossRates[source * SIZE + target] = baseRates[target] / baseRates[source];
+      }
+    }
+    return new CrossRateMatrix(crossRates);
+  }
+
+  // Возвращает кросс-курс для пары валют или NaN, если курса нет
+  public double rate(CurrencyEnum sourceCurrency, CurrencyEnum targetCurrency) {
+    return crossRates[sourceCurrency.ordinal() * SIZE + targetCurrency.ordinal()];
+  }
+
+  // Проверяет, есть ли курс для пары валют
+  public boolean supports(CurrencyEnum sourceCurrency, CurrencyEnum targetCurrency) {
+    return !Double.isNaN(rate(sourceCurrency, targetCurrency));
+  }
+
+  // Пересчитывает сумму: одно чтение из массива и одно умножение
+  public double convert(double amount, CurrencyEnum sourceCurrency, CurrencyEnum targetCurrency) {
+    return amount * rate(sourceCurrency, targetCurrency);
+  }
+}
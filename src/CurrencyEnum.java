@@ -1,19 +1,113 @@
+import java.nio.charset.StandardCharsets;
+
 // Класс CurrencyEnum представляет перечисление (enum) валют
+// Второй параметр - количество знаков минимальной единицы валюты (центов, грошей, геллеров) по ISO 4217
 public enum CurrencyEnum {
-  USD("Доллар США"),
-  EUR("Евро"),
-  GBP("Фунт стерлингов"),
-  CHF("Швейцарский франк"),
-  PLN("Польская злота"),
-  CZK("Чешская крона");
+  USD("Доллар США", 2),
+  EUR("Евро", 2),
+  GBP("Фунт стерлингов", 2),
+  CHF("Швейцарский франк", 2),
+  PLN("Польская злота", 2),
+  CZK("Чешская крона", 2);
+
+  // Кэш values(): сам метод values() при каждом вызове создает копию массива
+  private static final CurrencyEnum[] VALUES = values();
+  // Заранее вычисленные коды валют: три буквы имени, упакованные в int (см. packCode)
+  private static final int[] PACKED_CODES = new int[VALUES.length];
+
+  static {
+    for (CurrencyEnum currency : VALUES) {
+      PACKED_CODES[currency.ordinal()] = packCode(currency.name());
+    }
+  }
 
   private final String description; // opisanije(translation) currency
+  // Описание в кодировке UTF-8 - для записи журнала без построения строк
+  private final byte[] descriptionUtf8;
+  // Количество знаков после запятой, которые хранятся в сумме (2 - суммы в центах)
+  private final int minorUnits;
+  // Сколько минимальных единиц в одной единице валюты: 10^minorUnits
+  private final long minorUnitFactor;
 
-  CurrencyEnum(String description) {
+  CurrencyEnum(String description, int minorUnits) {
     this.description = description;
+    this.descriptionUtf8 = description.getBytes(StandardCharsets.UTF_8);
+    this.minorUnits = minorUnits;
+    long factor = 1;
+    for (int i = 0; i < minorUnits; i++) {
+      factor *= 10;
+    }
+    this.minorUnitFactor = factor;
   }
 
   public String getDescription() {
     return description;
   }
+
+  byte[] getDescriptionUtf8() {
+    return descriptionUtf8;
+  }
+
+  public int getMinorUnits() {
+    return minorUnits;
+  }
+
+  public long getMinorUnitFactor() {
+    return minorUnitFactor;
+  }
+
+  // Возвращает валюту по порядковому номеру без копирования массива values()
+  public static CurrencyEnum byOrdinal(int ordinal) {
+    return VALUES[ordinal];
+  }
+
+  // Количество валют
+  public static int count() {
+    return VALUES.length;
+  }
+
+  // Ищет валюту по трехбуквенному коду без учета регистра ("usd", "USD").
+  // Не создает объектов: код упаковывается в int и сравнивается с заранее вычисленными кодами.
+  // Возвращает null, если валюты с таким кодом нет.
+  public static CurrencyEnum fromCode(CharSequence code) {
+    int packed = packCode(code);
+    if (packed < 0) {
+      return null;
+    }
+    for (int i = 0; i < PACKED_CODES.length; i++) {
+      if (PACKED_CODES[i] == packed) {
+        return VALUES[i];
+      }
+    }
+    return null;
+  }
+
+  // Ищет валюту по описанию без учета регистра ("Евро"). Возвращает null, если такой валюты нет.
+  public static CurrencyEnum fromDescription(String description) {
+    for (CurrencyEnum currency : VALUES) {
+      if (currency.description.equalsIgnoreCase(description)) {
+        return currency;
+      }
+    }
+    return null;
+  }
+
+  // Упаковывает код из трех латинских букв в int (по 8 бит на букву, в верхнем регистре);
+  // для строки другой длины или с другими символами возвращает -1.
+  private static int packCode(CharSequence code) {
+    if (code.length() != 3) {
+      return -1;
+    }
+    int packed = 0;
+    for (int i = 0; i < 3; i++) {
+      char c = code.charAt(i);
+      if (c >= 'a' && c <= 'z') {
+        c -= 'a' - 'A';
+      } else if (c < 'A' || c > 'Z') {
+        return -1;
+      }
+      packed = (packed << 8) | c;
+    }
+    return packed;
+  }
 }
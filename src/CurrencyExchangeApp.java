@@ -1,4 +1,7 @@
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Scanner;
+import javax.management.JMException;
 
 /* Класс CurrencyExchangeApp  содержит методы для отображения меню,
    выбора опций пользователем, просмотра Доступные валюты, выполнения обмена валюты
@@ -8,6 +11,21 @@ public class CurrencyExchangeApp {
 
   // Здесь создается экземпляр класса ExchangeManager и инициализируется в поле exchangeManager
   private final ExchangeManager exchangeManager = new ExchangeManager();
+  // Лента обновления курсов; null, если она не запущена
+  private RateFeed rateFeed;
+  // Признак того, что приложение уже завершено (shutdown вызывается и из меню,
+  // и из обработчика завершения процесса)
+  private boolean shutDown;
+
+  // При создании приложения метрики обмена публикуются через JMX,
+  // чтобы их можно было смотреть в jconsole или VisualVM во время работы.
+  public CurrencyExchangeApp() {
+    try {
+      exchangeManager.getMetrics().registerMBean();
+    } catch (JMException e) {
+      System.out.println("Ошибка регистрации метрик: " + e.getMessage());
+    }
+  }
 
   // Этот метод отображает меню с опциями для пользователя.
   // Выводит на экран текст с номерами опций и приглашением выбрать опцию.
@@ -15,7 +33,9 @@ public class CurrencyExchangeApp {
     System.out.println("\nМеню:");
     System.out.println("1. Обмен валюты");
     System.out.println("2. История обменов");
-    System.out.println("3. Выход");
+    System.out.println("3. Метрики");
+    System.out.println("4. Оборот по паре валют за сегодня");
+    System.out.println("5. Выход");
     System.out.print("Выберите опцию: ");
   }
 
@@ -46,10 +66,56 @@ public class CurrencyExchangeApp {
   }
 
   /* Этот метод отображает историю обменов.Передает управление методу
-     viewExchangeHistoryFromFile из объекта exchangeManager
+     viewExchangeHistoryFromFile из объекта exchangeManager, который запрашивает
+     условия отбора и выводит последние подходящие записи.
+  */
+  public void viewExchangeHistory(Scanner scanner) {
+    exchangeManager.viewExchangeHistoryFromFile(scanner);
+  }
+
+  /* Этот метод выводит метрики обменов и журнала истории: количество обменов по парам валют,
+     задержки, объем записанной истории и ошибки (см. ExchangeMetrics).
+  */
+  public void printMetrics() {
+    System.out.println(exchangeManager.getMetrics().dump());
+  }
+
+  /* Этот метод выводит оборот по паре валют за сегодня. Передает управление методу
+     viewPairTotals объекта exchangeManager, который берет итоги из HistoryAggregates.
   */
-  public void viewExchangeHistory() {
-    exchangeManager.viewExchangeHistoryFromFile();
+  public void viewPairTotals(Scanner scanner) {
+    exchangeManager.viewPairTotals(scanner);
+  }
+
+  /* Этот метод завершает работу приложения: передает управление методу close
+     объекта exchangeManager, который сбрасывает на диск оставшуюся историю обменов.
+     Повторные вызовы ничего не делают.
+  */
+  public synchronized void shutdown() {
+    if (shutDown) {
+      return;
+    }
+    shutDown = true;
+    if (rateFeed != null) {
+      try {
+        rateFeed.close();
+      } catch (IOException e) {
+        System.out.println("Ошибка остановки ленты курсов: " + e.getMessage());
+      }
+    }
+    exchangeManager.close();
+  }
+
+  /* Этот метод запускает ленту обновления курсов RateFeed, которая читает файлы курсов
+     из каталога directory и следит за их изменениями.
+  */
+  public void startRateFeed(Path directory) {
+    try {
+      rateFeed = new RateFeed(exchangeManager, directory);
+      rateFeed.start();
+    } catch (IOException e) {
+      System.out.println("Ошибка запуска ленты курсов: " + e.getMessage());
+    }
   }
 
 }
\ No newline at end of file
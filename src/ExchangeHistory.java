@@ -0,0 +1,461 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/* Класс ExchangeHistory выполняет запросы к журналу истории обменов без загрузки всего файла.
+   Журнал состоит из закрытых (обычно сжатых) сегментов и активного файла (см. HistorySegments);
+   запрос читает только сегменты, диапазон дат которых пересекается с диапазоном запроса.
+   stream() возвращает ленивый поток записей, отобранных по HistoryQuery: текстовый журнал читается
+   построчно через NIO (Files.lines), двоичный активный файл - окнами через отображение в память
+   (BinaryHistoryReader), сжатые сегменты - через GZIPInputStream.
+   search() читает сегменты параллельно в общем ForkJoinPool и сливает результаты в порядке дат.
+   page() возвращает одну страницу результатов, tail() - последние N подходящих записей,
+   читая активный файл с конца, а более старые сегменты - параллельными волнами от новых к старым,
+   поэтому для просмотра свежих обменов не нужно сканировать весь журнал.
+   Если в запросе задан диапазон дат, чтение активного файла начинается со смещения, найденного
+   по индексу HistoryTimeIndex, и заканчивается, как только записи вышли за конец диапазона.
+   Журнал может ротироваться во время запроса. Закрытый сегмент, который успели сжать, читается
+   из сжатого файла (см. HistorySegments.open). Активный файл после открытия сверяется
+   с номером активного сегмента из списка: если номер изменился, вместо него читаются сегменты,
+   которые его заменили, - только что закрытый и новый активный файл.
+ */
+public class ExchangeHistory {
+
+  // Количество двоичных записей, читаемых за одно окно
+  private static final int BINARY_WINDOW = 64 * 1024;
+
+  // Файл журнала и его формат
+  private final Path file;
+  private final HistoryFormat format;
+
+  public ExchangeHistory(Path file, HistoryFormat format) {
+    this.file = file;
+    this.format = format;
+  }
+
+  // Ленивый поток записей, удовлетворяющих запросу, в порядке записи в журнал.
+  // Сегменты открываются по очереди, по мере того как поток доходит до них.
+  // Поток держит файл открытым, поэтому его нужно закрывать (try-with-resources).
+  // Строки, которые не удается разобрать, пропускаются.
+  public Stream<ExchangeRecord> stream(HistoryQuery query) throws IOException {
+    return select(query).stream().flatMap(segment -> streamSegment(segment, query));
+  }
+
+  // Все записи, удовлетворяющие запросу, упорядоченные по дате. Каждый сегмент читается
+  // отдельной задачей ForkJoinPool, а результаты сливаются попарно, как в сортировке слиянием,
+  // поэтому чтение большого журнала использует все ядра.
+  public List<ExchangeRecord> search(HistoryQuery query) throws IOException {
+    List<HistorySegments.Segment> segments = select(query);
+    return invoke(new SegmentSearch(segments, 0, segments.size(), query, 0));
+  }
+
+  // Поток записей одного сегмента, удовлетворяющих запросу
+  private Stream<ExchangeRecord> streamSegment(HistorySegments.Segment segment,
+      HistoryQuery query) {
+    try {
+      if (segment.isActive()) {
+        Stream<ExchangeRecord> records = streamActive(segment.getSequence(), query);
+        return records != null ? records : replacing(segment.getSequence(), query).stream()
+            .flatMap(replacement -> streamSegment(replacement, query));
+      }
+      long stopMillis = stopMillis(query, null);
+      return HistorySegments.records(segment, format, query.getFromMillis())
+          .takeWhile(exchangeRecord -> exchangeRecord.getEpochMillis() <= stopMillis)
+          .filter(query::matches);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // Сегменты, которые могут содержать записи из диапазона дат запроса
+  private List<HistorySegments.Segment> select(HistoryQuery query) throws IOException {
+    List<HistorySegments.Segment> segments = new ArrayList<>();
+    for (HistorySegments.Segment segment : HistorySegments.list(file)) {
+      if (segment.overlaps(query.getFromMillis(), query.getToMillis(),
+          HistoryTimeIndex.DEFAULT_BUCKET_MILLIS)) {
+        segments.add(segment);
+      }
+    }
+    return segments;
+  }
+
+  // Сегменты, которые после ротации заменили активный сегмент с номером sequence: закрытые сегменты
+  // с номерами от sequence и новый активный файл
+  private List<HistorySegments.Segment> replacing(long sequence, HistoryQuery query)
+      throws IOException {
+    List<HistorySegments.Segment> segments = select(query);
+    segments.removeIf(segment -> segment.getSequence() < sequence);
+    return segments;
+  }
+
+  // Открывает активный файл журнала. Возвращает null, если файла уже нет (его переименовали
+  // при ротации); вызывающий затем проверяет номер сегмента через isStillActive.
+  private static <T extends Closeable> T openActive(ActiveOpener<T> opener) throws IOException {
+    try {
+      return opener.open();
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+  }
+
+  // Открытый файл - все еще активный сегмент с номером sequence: при ротации активный файл
+  // переименовывается в закрытый сегмент с этим номером, и номер активного сегмента растет.
+  // Иначе открытый файл закрывается.
+  private boolean isStillActive(long sequence, Closeable opened) throws IOException {
+    if (opened != null && HistorySegments.activeSequence(file) == sequence) {
+      return true;
+    }
+    if (opened != null) {
+      opened.close();
+    }
+    return false;
+  }
+
+  // Индекс открытого активного файла для запроса по датам (null - запрос без дат или файла нет).
+  // Если индекс прочитать не удалось, открытый файл закрывается.
+  private HistoryTimeIndex activeIndex(boolean ranged, Closeable opened) throws IOException {
+    if (!ranged || opened == null) {
+      return null;
+    }
+    try {
+      return HistoryTimeIndex.read(file);
+    } catch (IOException | RuntimeException e) {
+      opened.close();
+      throw e;
+    }
+  }
+
+  // Поток записей активного файла с номером сегмента sequence; при запросе по датам чтение
+  // начинается с места, найденного по индексу. Возвращает null, если журнал ротировался
+  // после получения списка сегментов. Индекс читается после открытия файла и до сверки номера,
+  // поэтому относится к тому же файлу.
+  private Stream<ExchangeRecord> streamActive(long sequence, HistoryQuery query)
+      throws IOException {
+    boolean ranged = query.getFromMillis() != Long.MIN_VALUE
+        || query.getToMillis() != Long.MAX_VALUE;
+    if (format == HistoryFormat.BINARY) {
+      BinaryHistoryReader reader = openActive(() -> new BinaryHistoryReader(file));
+      HistoryTimeIndex index = activeIndex(ranged, reader);
+      if (!isStillActive(sequence, reader)) {
+        return null;
+      }
+      long startOffset = index == null ? 0 : index.seek(query.getFromMillis());
+      return streamBinary(reader, query, startOffset / HistoryFormat.RECORD_SIZE,
+          stopMillis(query, index));
+    }
+    FileChannel channel = openActive(() -> FileChannel.open(file, StandardOpenOption.READ));
+    HistoryTimeIndex index = activeIndex(ranged, channel);
+    if (!isStillActive(sequence, channel)) {
+      return null;
+    }
+    long stopMillis = stopMillis(query, index);
+    HistoryLineParser parser = new HistoryLineParser();
+    channel.position(index == null ? 0 : index.seek(query.getFromMillis()));
+    BufferedReader reader = new BufferedReader(
+        Channels.newReader(channel, StandardCharsets.UTF_8), 64 * 1024);
+    return reader.lines()
+        .map(line -> parseOrNull(parser, line))
+        .filter(Objects::nonNull)
+        .takeWhile(exchangeRecord -> exchangeRecord.getEpochMillis() <= stopMillis)
+        .filter(query::matches)
+        .onClose(() -> closeQuietly(reader));
+  }
+
+  // Страница результатов с номером pageNumber (с нуля) размером pageSize записей.
+  // Страница, начало которой не помещается в long, заведомо пуста.
+  public List<ExchangeRecord> page(HistoryQuery query, long pageNumber, int pageSize)
+      throws IOException {
+    if (pageNumber < 0 || pageSize <= 0) {
+      throw new IllegalArgumentException("Неверные параметры страницы.");
+    }
+    List<ExchangeRecord> result = new ArrayList<>(Math.min(pageSize, 1024));
+    if (pageNumber > Long.MAX_VALUE / pageSize) {
+      return result;
+    }
+    try (Stream<ExchangeRecord> records = stream(query)) {
+      records.skip(pageNumber * pageSize).limit(pageSize).forEach(result::add);
+      return result;
+    }
+  }
+
+  // Последние count записей, удовлетворяющих запросу, упорядоченные по дате.
+  // Активный файл читается с конца, чтение останавливается, как только набрано нужное количество записей.
+  // Если записей не хватило, закрытые сегменты читаются волнами от новых к старым: по одному сегменту
+  // на поток ForkJoinPool, каждый сегмент отдает свои последние подходящие записи.
+  public List<ExchangeRecord> tail(HistoryQuery query, int count) throws IOException {
+    List<ExchangeRecord> result = new ArrayList<>(Math.min(count, 1024));
+    if (count <= 0) {
+      return result;
+    }
+    List<HistorySegments.Segment> segments = select(query);
+    int end = segments.size();
+    // Если журнал ротировался после получения списка, активный сегмент заменяется сегментами,
+    // которые пришли ему на смену
+    while (end > 0 && segments.get(end - 1).isActive()) {
+      long sequence = segments.remove(end - 1).getSequence();
+      if (tailActive(sequence, query, count, result)) {
+        end--;
+        break;
+      }
+      segments.addAll(replacing(sequence, query));
+      end = segments.size();
+    }
+    int parallelism = ForkJoinPool.commonPool().getParallelism();
+    while (end > 0 && result.size() < count) {
+      int start = Math.max(0, end - parallelism);
+      List<ExchangeRecord> older = invoke(
+          new SegmentSearch(segments, start, end, query, count - result.size()));
+      older.addAll(result);
+      result = older;
+      end = start;
+    }
+    // Записи, попавшие в журнал с опозданием, встают на место по дате; сортировка устойчива
+    result.sort(Comparator.comparingLong(ExchangeRecord::getEpochMillis));
+    return result;
+  }
+
+  // Последние count записей активного файла с номером сегмента sequence, удовлетворяющих запросу,
+  // в порядке записи. Возвращает false, если журнал ротировался после получения списка сегментов.
+  private boolean tailActive(long sequence, HistoryQuery query, int count,
+      List<ExchangeRecord> result) throws IOException {
+    if (format == HistoryFormat.BINARY) {
+      BinaryHistoryReader reader = openActive(() -> new BinaryHistoryReader(file));
+      if (!isStillActive(sequence, reader)) {
+        return false;
+      }
+      tailBinary(reader, query, count, result);
+    } else {
+      HistoryLineParser parser = new HistoryLineParser();
+      ReverseLineReader opened = openActive(() -> new ReverseLineReader(file));
+      if (!isStillActive(sequence, opened)) {
+        return false;
+      }
+      try (ReverseLineReader reader = opened) {
+        String line;
+        while (result.size() < count && (line = reader.readLine()) != null) {
+          ExchangeRecord exchangeRecord = parseOrNull(parser, line);
+          if (exchangeRecord != null && query.matches(exchangeRecord)) {
+            result.add(exchangeRecord);
+          }
+        }
+      }
+    }
+    Collections.reverse(result);
+    return true;
+  }
+
+  // Двоичный журнал читается окнами по BINARY_WINDOW записей; следующее окно отображается,
+  // только когда поток дошел до его начала.
+  // Чтение прекращается после окна, в котором встретилась запись позже stopMillis.
+  private Stream<ExchangeRecord> streamBinary(BinaryHistoryReader reader, HistoryQuery query,
+      long firstRecord, long stopMillis) {
+    long windows = (reader.size() - firstRecord + BINARY_WINDOW - 1) / BINARY_WINDOW;
+    boolean[] passedEnd = new boolean[1];
+    return LongStream.range(0, Math.max(0, windows))
+        .takeWhile(window -> !passedEnd[0])
+        .mapToObj(window -> {
+          long from = firstRecord + window * BINARY_WINDOW;
+          List<ExchangeRecord> matches = new ArrayList<>();
+          scanWindow(reader, from, from + BINARY_WINDOW, (epochMillis, amount, source, target,
+              resultAmount, rateVersion) -> {
+            if (epochMillis > stopMillis) {
+              passedEnd[0] = true;
+            } else if (query.matches(epochMillis, amount, source, target)) {
+              matches.add(new ExchangeRecord(epochMillis, amount, source, target,
+                  resultAmount, rateVersion));
+            }
+          });
+          return matches;
+        })
+        .flatMap(List::stream)
+        .onClose(() -> closeQuietly(reader));
+  }
+
+  // Граница, после которой чтение по возрастанию дат можно прекращать: конец диапазона запроса
+  // плюс один интервал индекса на случай записей, попавших в журнал с опозданием.
+  private static long stopMillis(HistoryQuery query, HistoryTimeIndex index) {
+    long slack = index == null ? HistoryTimeIndex.DEFAULT_BUCKET_MILLIS : index.getBucketMillis();
+    long to = query.getToMillis();
+    return to > Long.MAX_VALUE - slack ? Long.MAX_VALUE : to + slack;
+  }
+
+  private static void closeQuietly(Closeable closeable) {
+    try {
+      closeable.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // Последние записи двоичного журнала: окна просматриваются от конца файла к началу.
+  // Читатель закрывается по окончании.
+  private static void tailBinary(BinaryHistoryReader opened, HistoryQuery query, int count,
+      List<ExchangeRecord> result) throws IOException {
+    try (BinaryHistoryReader reader = opened) {
+      long end = reader.size();
+      while (end > 0 && result.size() < count) {
+        long start = Math.max(0, end - BINARY_WINDOW);
+        List<ExchangeRecord> window = new ArrayList<>();
+        scanWindow(reader, start, end, (epochMillis, amount, source, target, resultAmount,
+            rateVersion) -> {
+          if (query.matches(epochMillis, amount, source, target)) {
+            window.add(new ExchangeRecord(epochMillis, amount, source, target,
+                resultAmount, rateVersion));
+          }
+        });
+        for (int i = window.size() - 1; i >= 0 && result.size() < count; i--) {
+          result.add(window.get(i));
+        }
+        end = start;
+      }
+    }
+  }
+
+  // Обходит записи с номерами [from, to), превращая IOException в UncheckedIOException для потоков
+  private static void scanWindow(BinaryHistoryReader reader, long from, long to,
+      BinaryHistoryReader.RecordVisitor visitor) {
+    try {
+      reader.scan(from, to, visitor);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // Запускает поиск по сегментам в общем ForkJoinPool; ошибка чтения сегмента выбрасывается как IOException
+  private static List<ExchangeRecord> invoke(SegmentSearch search) throws IOException {
+    try {
+      return ForkJoinPool.commonPool().invoke(search);
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  // Сливает два упорядоченных по дате списка; limit > 0 оставляет только последние limit записей
+  private static List<ExchangeRecord> merge(List<ExchangeRecord> left, List<ExchangeRecord> right,
+      int limit) {
+    List<ExchangeRecord> merged = new ArrayList<>(left.size() + right.size());
+    int i = 0;
+    int j = 0;
+    while (i < left.size() && j < right.size()) {
+      // При равных датах первой идет запись более старого сегмента
+      if (right.get(j).getEpochMillis() < left.get(i).getEpochMillis()) {
+        merged.add(right.get(j++));
+      } else {
+        merged.add(left.get(i++));
+      }
+    }
+    merged.addAll(left.subList(i, left.size()));
+    merged.addAll(right.subList(j, right.size()));
+    return limit > 0 && merged.size() > limit
+        ? new ArrayList<>(merged.subList(merged.size() - limit, merged.size())) : merged;
+  }
+
+  /* Задача ForkJoinPool: поиск записей в сегментах с номерами [from, to) списка.
+     Диапазон делится пополам, половины выполняются параллельно, результаты сливаются по дате.
+     Если limit > 0, каждая задача возвращает только последние limit подходящих записей.
+   */
+  private final class SegmentSearch extends RecursiveTask<List<ExchangeRecord>> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<HistorySegments.Segment> segments;
+    private final int from;
+    private final int to;
+    private final HistoryQuery query;
+    private final int limit;
+
+    SegmentSearch(List<HistorySegments.Segment> segments, int from, int to, HistoryQuery query,
+        int limit) {
+      this.segments = segments;
+      this.from = from;
+      this.to = to;
+      this.query = query;
+      this.limit = limit;
+    }
+
+    @Override
+    protected List<ExchangeRecord> compute() {
+      if (to - from <= 1) {
+        return from < to ? searchSegment(segments.get(from)) : new ArrayList<>();
+      }
+      int middle = (from + to) >>> 1;
+      SegmentSearch older = new SegmentSearch(segments, from, middle, query, limit);
+      older.fork();
+      List<ExchangeRecord> newer = new SegmentSearch(segments, middle, to, query, limit).compute();
+      return merge(older.join(), newer, limit);
+    }
+
+    // Подходящие записи одного сегмента, упорядоченные по дате
+    private List<ExchangeRecord> searchSegment(HistorySegments.Segment segment) {
+      ArrayDeque<ExchangeRecord> matches = new ArrayDeque<>();
+      try {
+        if (segment.isActive()) {
+          Stream<ExchangeRecord> active = streamActive(segment.getSequence(), query);
+          if (active == null) {
+            // Журнал ротировался: читаются сегменты, которые заменили активный
+            List<HistorySegments.Segment> replacing = replacing(segment.getSequence(), query);
+            return new SegmentSearch(replacing, 0, replacing.size(), query, limit).compute();
+          }
+          try (Stream<ExchangeRecord> records = active) {
+            records.forEach(exchangeRecord -> keep(matches, exchangeRecord));
+          }
+        } else {
+          // Сегмент читается с места, найденного по индексу членов GZIP, и только до конца запроса
+          HistorySegments.scanRange(segment, format, query.getFromMillis(), stopMillis(query, null),
+              (epochMillis, amount, source, target, resultAmount, rateVersion) -> {
+                if (query.matches(epochMillis, amount, source, target)) {
+                  keep(matches, new ExchangeRecord(epochMillis, amount, source, target,
+                      resultAmount, rateVersion));
+                }
+              });
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      List<ExchangeRecord> result = new ArrayList<>(matches);
+      // Сортировка устойчива: записи с одной датой остаются в порядке журнала
+      result.sort(Comparator.comparingLong(ExchangeRecord::getEpochMillis));
+      return result;
+    }
+
+    private void keep(ArrayDeque<ExchangeRecord> matches, ExchangeRecord exchangeRecord) {
+      matches.addLast(exchangeRecord);
+      if (limit > 0 && matches.size() > limit) {
+        matches.removeFirst();
+      }
+    }
+  }
+
+  // Открытие файла, которое может не найти его (NoSuchFileException)
+  private interface ActiveOpener<T extends Closeable> {
+    T open() throws IOException;
+  }
+
+  static ExchangeRecord parseOrNull(HistoryLineParser parser, String line) {
+    if (line.isBlank()) {
+      return null;
+    }
+    try {
+      return parser.parse(line);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+}
@@ -1,26 +1,28 @@
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.DecimalFormat;
-import java.util.Date;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.InputMismatchException;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class ExchangeManager {
   // Хранит текущие курсы обмена валюты
   // Эта строка является объявлением и инициализацией поля класса ExchangeManager с именем exchangeRates.
   //
-  //private final: Это модификаторы доступа и ключевое слово final, которые указывают,
-  // что это поле доступно только внутри класса ExchangeManager, и его значение нельзя изменить после его инициализации.
-  //HashMap<CurrencyEnum, Double>: Это тип данных поля. Это HashMap, который ассоциирует объекты типа CurrencyEnum
-  // с объектами типа Double. В данном контексте, он используется для хранения курсов обмена валюты,
-  // где ключами являются объекты CurrencyEnum, а значениями - курсы обмена, представленные типом Double.
-  //exchangeRates: Это имя поля, которое мы используем для обращения к этому объекту внутри класса ExchangeManager.
-  //new HashMap<>(): Это инициализация объекта HashMap, которая создает новый экземпляр HashMap
-  // и присваивает его переменной exchangeRates.
-  private final HashMap<CurrencyEnum, Double> exchangeRates = new HashMap<>();
+  //AtomicReference<RateSnapshot>: Это тип данных поля. Поле хранит ссылку на неизменяемый снимок курсов
+  // RateSnapshot (номер версии, курсы к базовой валюте и матрица кросс-курсов).
+  // При обновлении курсов создается новый снимок, и ссылка на него подменяется атомарно,
+  // поэтому пересчеты из разных потоков никогда не блокируются и не видят наполовину обновленную таблицу.
+  private final AtomicReference<RateSnapshot> exchangeRates = new AtomicReference<>();
   // Форматирование десятичных чисел для вывода результата обмена
   // Эта строка представляет собой объявление и инициализацию поля класса ExchangeManager с именем decimalFormat.
   //
@@ -37,27 +39,102 @@ public class ExchangeManager {
   // Здесь # обозначает цифры, а . и ## указывают на количество знаков после запятой.
   // Таким образом, формат #.## будет выводить число с двумя знаками после запятой.
   private final DecimalFormat decimalFormat = new DecimalFormat("#.##");
+  // Режим округления при точном пересчете сумм (системное свойство money.rounding,
+  // по умолчанию HALF_EVEN; см. MoneyMath и FixedPointRateMatrix)
+  private final RoundingMode roundingMode = MoneyMath.roundingModeFromSystemProperty();
+  // Сколько последних записей истории выводить по умолчанию
+  private static final int DEFAULT_HISTORY_TAIL = 20;
+  // Журнал истории обменов: файл "history.txt" открывается один раз на всё время работы,
+  // записи сбрасываются на диск фоновым потоком пачками (см. HistoryJournal).
+  // Формат журнала задается системным свойством history.format (text - "history.txt",
+  // binary - компактный двоичный "history.bin"); по умолчанию используется текстовый формат.
+  private final HistoryFormat historyFormat;
+  // Файл журнала истории
+  private final Path historyFile;
+  // Метрики обменов и журнала (см. ExchangeMetrics); публикуются через JMX и пункт меню "Метрики"
+  private final ExchangeMetrics metrics;
+  private final HistoryJournal historyJournal;
   // Конструктор класса ExchangeManager
   // При создании объекта ExchangeManager происходит инициализация курсов валют.
-  // Эти курсы сохраняются в хэш-карте exchangeRates.
+  // Эти курсы сохраняются в первом снимке курсов exchangeRates.
   public ExchangeManager() {
+    this(HistoryFormat.fromSystemProperty());
+  }
+
+  private ExchangeManager(HistoryFormat historyFormat) {
+    this(Paths.get(historyFormat.getDefaultFileName()), historyFormat);
+  }
+
+  // Конструктор с явно заданным файлом журнала (используется бенчмарками и серверами,
+  // которым нужен журнал в отдельном каталоге)
+  public ExchangeManager(Path historyFile, HistoryFormat historyFormat) {
+    this(historyFile, historyFormat, ExchangeMetrics.fromSystemProperty());
+  }
+
+  // Конструктор с явно заданными метриками (бенчмарки сравнивают включенные и отключенные метрики)
+  public ExchangeManager(Path historyFile, HistoryFormat historyFormat, ExchangeMetrics metrics) {
+    this.historyFile = historyFile;
+    this.historyFormat = historyFormat;
+    this.metrics = metrics;
+    this.historyJournal = new HistoryJournal(historyFile, historyFormat, metrics);
     initializeExchangeRates();
   }
   // Инициализация курсов валют
   // Этот метод initializeExchangeRates() используется для инициализации курсов обмена валюты в объекте ExchangeManager.
-  // Внутри метода происходит заполнение хэш-карты exchangeRates значениями курсов обмена для каждой валюты.
+  // Внутри метода происходит заполнение хэш-карты значениями курсов обмена для каждой валюты,
+  // после чего из нее создается первый снимок курсов. Номер его версии следует за версией
+  // последней записи истории, чтобы версии не повторялись после перезапуска программы.
 
   // Каждый вызов put() добавляет новую запись в хэш-карту, где ключом является объект перечисления CurrencyEnum,
   // а значением - курс обмена для соответствующей валюты.
   // Этот метод вызывается при создании объекта ExchangeManager
   // и выполняет предварительную настройку объекта, заполняя его курсы обмена по умолчанию.
   private void initializeExchangeRates() {
-    exchangeRates.put(CurrencyEnum.USD, 1.0);
-    exchangeRates.put(CurrencyEnum.EUR, 0.85);
-    exchangeRates.put(CurrencyEnum.GBP, 0.73);
-    exchangeRates.put(CurrencyEnum.CHF, 1.08);
-    exchangeRates.put(CurrencyEnum.PLN, 3.95);
-    exchangeRates.put(CurrencyEnum.CZK, 22.10);
+    HashMap<CurrencyEnum, Double> initialRates = new HashMap<>();
+    initialRates.put(CurrencyEnum.USD, 1.0);
+    initialRates.put(CurrencyEnum.EUR, 0.85);
+    initialRates.put(CurrencyEnum.GBP, 0.73);
+    initialRates.put(CurrencyEnum.CHF, 1.08);
+    initialRates.put(CurrencyEnum.PLN, 3.95);
+    initialRates.put(CurrencyEnum.CZK, 22.10);
+    exchangeRates.set(RateSnapshot.initial(lastRateVersion() + 1, initialRates));
+  }
+
+  // Номер версии курсов последней записи истории; 0, если история пуста или не читается
+  private int lastRateVersion() {
+    try {
+      List<ExchangeRecord> last = new ExchangeHistory(historyFile, historyFormat)
+          .tail(HistoryQuery.all(), 1);
+      return last.isEmpty() ? 0 : last.get(0).getRateVersion();
+    } catch (IOException e) {
+      metrics.recordError(ExchangeMetrics.ErrorCause.HISTORY_READ);
+      System.out.println("Ошибка чтения файла: " + e.getMessage());
+      return 0;
+    }
+  }
+
+  // Метод для изменения курса одной валюты
+  public void setExchangeRate(CurrencyEnum currency, double rate) {
+    updateExchangeRates(Collections.singletonMap(currency, rate));
+  }
+
+  // Метод для обновления курсов (используется лентой курсов RateFeed)
+  // Новый снимок строится из текущего и публикуется атомарной подменой ссылки (compare-and-set).
+  // Если параллельно был опубликован другой снимок, построение повторяется уже от него,
+  // поэтому одновременные обновления не теряются, а пересчеты при этом не блокируются.
+  // Возвращает опубликованный снимок.
+  public RateSnapshot updateExchangeRates(Map<CurrencyEnum, Double> updates) {
+    return exchangeRates.updateAndGet(snapshot -> snapshot.withRates(updates));
+  }
+
+  // Возвращает текущий снимок курсов
+  public RateSnapshot getRateSnapshot() {
+    return exchangeRates.get();
+  }
+
+  // Возвращает текущую таблицу курсов только для чтения
+  public Map<CurrencyEnum, Double> getExchangeRates() {
+    return exchangeRates.get().getRates();
   }
   // Метод для выполнения обмена валюты
   // Метод performExchange: Этот метод запрашивает у пользователя данные для обмена валюты
@@ -85,7 +162,7 @@ public class ExchangeManager {
       // который принимает сокращение валюты и возвращает соответствующий объект перечисления CurrencyEnum (sourceCurrency).
       // Этот метод проверяет существование валюты с указанным сокращением и выбрасывает исключение,
       // если такой валюты не существует.
-      CurrencyEnum sourceCurrency = getCurrencyByAbbreviation(sourceCurrencyAbbreviation);
+      CurrencyEnum sourceCurrency = currencyByAbbreviation(sourceCurrencyAbbreviation);
       // Запрос сокращения целевой валюты: Затем аналогично запрашивается сокращение валюты,
       // которую пользователь хочет приобрести. Введенное значение также конвертируется в верхний регистр
       // и сохраняется в переменной targetCurrencyAbbreviation.
@@ -93,81 +170,229 @@ public class ExchangeManager {
       String targetCurrencyAbbreviation = scanner.next().toUpperCase();
       // Получение объекта целевой валюты для обмена: Снова вызывается метод getCurrencyByAbbreviation,
       // чтобы получить объект целевой валюты (targetCurrency).
-      CurrencyEnum targetCurrency = getCurrencyByAbbreviation(targetCurrencyAbbreviation);
-      // Расчет результата обмена: Если обе валюты присутствуют в списке обмена, происходит расчет результата обмена.
-      // Для этого получаются курсы валют и производится математическое вычисление.
-      if (exchangeRates.containsKey(sourceCurrency) && exchangeRates.containsKey(
-              targetCurrency)) {
-        double sourceRate = exchangeRates.get(sourceCurrency);
-        double targetRate = exchangeRates.get(targetCurrency);
-
-        double resultAmount = amount * (targetRate / sourceRate);
+      CurrencyEnum targetCurrency = currencyByAbbreviation(targetCurrencyAbbreviation);
+      // Расчет результата обмена: Если обе валюты присутствуют в списке обмена, происходит расчет результата обмена
+      // и запись в историю (см. метод exchange).
+      if (exchangeRates.get().getMatrix().supports(sourceCurrency, targetCurrency)) {
+        ExchangeRecord exchangeRecord = exchange(amount, sourceCurrency, targetCurrency);
         // Вывод результата обмена: Результат обмена выводится на экран, округленный до двух знаков после запятой,
         // с помощью объекта DecimalFormat.
-        System.out.println("Результат обмена: " + decimalFormat.format(resultAmount) + " "
-                + targetCurrency.getDescription());
-        // Создание и добавление записи в историю обменов: Создается объект ExchangeRecord,
-        // содержащий информацию о текущем обмене, включая дату и время.
-        // Затем этот объект добавляется в список exchangeHistory.
-        ExchangeRecord exchangeRecord = new ExchangeRecord(new Date(), amount,
-                sourceCurrency, targetCurrency, resultAmount);
-
-
-        // Запись обмена в файл: Для хранения истории обменов в файл "text.txt" создается объект BufferedWriter.
-        // Запись происходит в конец файла, а затем файл закрывается. Если возникает ошибка ввода-вывода,
-        // выводится соответствующее сообщение.
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter("history.txt", true))) {
-          writer.write(exchangeRecord.toString());
-          writer.newLine();
-        } catch (IOException e) {
-          System.out.println("Ошибка записи в файл: " + e.getMessage());
-        }
+        System.out.println("Результат обмена: " + decimalFormat.format(exchangeRecord.getResultAmount())
+                + " " + targetCurrency.getDescription());
       } else {
+        metrics.recordError(ExchangeMetrics.ErrorCause.UNSUPPORTED_PAIR);
         System.out.println("Неверные валюты. Пожалуйста, выберите существующие валюты.");
       }
+    } catch (InputMismatchException e) {
+      // Введено не число: ошибка учитывается в метриках как неверная сумма
+      metrics.recordError(ExchangeMetrics.ErrorCause.INVALID_AMOUNT);
+      System.out.println("Ошибка обмена: Неверная сумма.");
     } catch (Exception e) {
       System.out.println("Ошибка обмена: " + e.getMessage());
     }
   }
 
-  // Метод для чтения истории обменов из файла "text.txt" и вывода на экран
-  // Этот метод открывает файл "text.txt" и читает из него историю обменов.
-  // Полученные записи выводятся на экран.
-  public void viewExchangeHistoryFromFile() {
+  // Метод для выполнения обмена без консольного ввода-вывода
+  // Пересчитывает сумму по текущему снимку курсов, создает запись ExchangeRecord и передает её журналу.
+  // Метод потокобезопасен: снимок курсов неизменяем и читается один раз, чтобы расчет и запись в историю
+  // использовали одну и ту же версию, а журнал принимает записи из любых потоков.
+  // Используется консольным обменом (performExchange) и сетевым сервером ExchangeServer.
+  public ExchangeRecord exchange(double amount, CurrencyEnum sourceCurrency,
+      CurrencyEnum targetCurrency) throws InterruptedException {
+    RateSnapshot snapshot = exchangeRates.get();
+    long epochMillis = System.currentTimeMillis();
+    double resultAmount = exchange(snapshot, epochMillis, amount, sourceCurrency, targetCurrency);
+    // Создание записи об обмене: объект ExchangeRecord содержит дату и время обмена,
+    // сумму, округленную до минимальных единиц так же, как в журнале, и версию снимка курсов.
+    double recordedAmount = MoneyMath.toAmount(
+        MoneyMath.toMinorUnits(amount, sourceCurrency, roundingMode), sourceCurrency);
+    return new ExchangeRecord(epochMillis, recordedAmount, sourceCurrency, targetCurrency,
+        resultAmount, snapshot.getVersion());
+  }
+
+  // Вариант обмена без создания объектов для нагруженных путей (сетевой сервер, пакетная обработка):
+  // пересчитывает сумму по переданному снимку курсов, передает поля записи журналу
+  // и возвращает результат обмена. Версию курсов вызывающий код берет из того же снимка.
+  public double exchange(RateSnapshot snapshot, long epochMillis, double amount,
+      CurrencyEnum sourceCurrency, CurrencyEnum targetCurrency) throws InterruptedException {
+    // Замер задержки пересчета; при отключенных метриках время не запрашивается
+    long startNanos = metrics.startTimer();
+    if (amount < 0) {
+      metrics.recordError(ExchangeMetrics.ErrorCause.INVALID_AMOUNT);
+      throw new IllegalArgumentException("Сумма для обмена не может быть отрицательной.");
+    }
+    if (!snapshot.getFixedPointMatrix().supports(sourceCurrency, targetCurrency)) {
+      metrics.recordError(ExchangeMetrics.ErrorCause.UNSUPPORTED_PAIR);
+      throw new IllegalArgumentException("Неверные валюты. Пожалуйста, выберите существующие валюты.");
+    }
+    // Точный расчет: сумма переводится в минимальные единицы исходной валюты (центы),
+    // пересчитывается целочисленно и округляется до минимальных единиц целевой валюты один раз.
+    // В журнал попадают уже округленные суммы, поэтому история сходится при сверке.
+    long amountMinor;
+    long resultMinor;
+    try {
+      amountMinor = MoneyMath.toMinorUnits(amount, sourceCurrency, roundingMode);
+      resultMinor = snapshot.convertMinorUnits(amountMinor, sourceCurrency, targetCurrency,
+          roundingMode);
+    } catch (IllegalArgumentException e) {
+      // Сумма не число, слишком велика или требует округления в режиме UNNECESSARY
+      metrics.recordError(ExchangeMetrics.ErrorCause.INVALID_AMOUNT);
+      throw e;
+    }
+    double resultAmount = MoneyMath.toAmount(resultMinor, targetCurrency);
+    metrics.recordConversion(sourceCurrency, targetCurrency, startNanos);
+    // Запись обмена в файл: поля записи передаются журналу historyJournal, который держит файл
+    // "history.txt" открытым и сбрасывает записи на диск пачками в фоновом потоке.
+    // Если буфер журнала заполнен, вызов ждет освобождения места.
+    historyJournal.append(epochMillis, MoneyMath.toAmount(amountMinor, sourceCurrency),
+        sourceCurrency, targetCurrency, resultAmount, snapshot.getVersion());
+    return resultAmount;
+  }
+
+  // Метод для пересчета суммы из одной валюты в другую без ввода-вывода
+  // Используется как консольным обменом (performExchange), так и пакетным движком BatchExchangeEngine.
+  // Кросс-курс берется из матрицы текущего снимка курсов:
+  // одно чтение из массива и одно умножение. Если для пары нет курса,
+  // выбрасывается IllegalArgumentException.
+  public double convert(double amount, CurrencyEnum sourceCurrency, CurrencyEnum targetCurrency) {
+    return exchangeRates.get().convert(amount, sourceCurrency, targetCurrency);
+  }
+
+  // Точный пересчет суммы в минимальных единицах (центах) исходной валюты
+  // в минимальные единицы целевой валюты по текущему снимку курсов (см. FixedPointRateMatrix).
+  // Результат округляется один раз режимом округления менеджера.
+  public long convertMinorUnits(long amountMinor, CurrencyEnum sourceCurrency,
+      CurrencyEnum targetCurrency) {
+    return exchangeRates.get().convertMinorUnits(amountMinor, sourceCurrency, targetCurrency,
+        roundingMode);
+  }
+
+  public RoundingMode getRoundingMode() {
+    return roundingMode;
+  }
+
+  // Метод для просмотра истории обменов
+  // Файл истории может быть очень большим, поэтому метод не выводит его целиком:
+  // пользователь может задать исходную и целевую валюту, а на экран выводятся только
+  // последние подходящие записи. Файл читается с конца (см. ExchangeHistory.tail).
+  public void viewExchangeHistoryFromFile(Scanner scanner) {
+    // Запрос условий отбора: пустой ввод означает "без ограничения".
+    HistoryQuery query = HistoryQuery.all();
+    try {
+      System.out.print("Исходная валюта (Enter - любая): ");
+      String source = scanner.nextLine().trim();
+      if (!source.isEmpty()) {
+        query = query.source(currencyByAbbreviation(source.toUpperCase()));
+      }
+      System.out.print("Целевая валюта (Enter - любая): ");
+      String target = scanner.nextLine().trim();
+      if (!target.isEmpty()) {
+        query = query.target(currencyByAbbreviation(target.toUpperCase()));
+      }
+      System.out.print("Сколько последних записей показать (Enter - " + DEFAULT_HISTORY_TAIL + "): ");
+      String count = scanner.nextLine().trim();
+      int tail = count.isEmpty() ? DEFAULT_HISTORY_TAIL : Integer.parseInt(count);
+      printExchangeHistory(query, tail);
+    } catch (IllegalArgumentException e) {
+      System.out.println("Ошибка ввода: " + e.getMessage());
+    }
+  }
+
+  // Метод для вывода последних записей истории, удовлетворяющих запросу
+  public void printExchangeHistory(HistoryQuery query, int tail) {
     // Выводит заголовок "История обменов:" для обозначения начала вывода истории обменов на консоль.
     System.out.println("\nИстория обменов:");
-    // Открывает файл "text.txt" для чтения с использованием объекта Scanner.
-    // Это делается в блоке try-with-resources, чтобы автоматически закрыть Scanner после чтения файла,
-    // даже если возникнет исключение.
-    try (Scanner fileScanner = new Scanner(new File("history.txt"))) {
-      // Проверяет, есть ли еще строки в файле для чтения.
-      while (fileScanner.hasNextLine()) {
-        // Считывает следующую строку из файла.
-        String line = fileScanner.nextLine();
-        // Выводит считанную строку на консоль.
-        System.out.println(line);
-      }
-      //  Обрабатывает исключение, если файл "text.txt" не найден.
-      //  В этом случае выводится сообщение "Файл с историей обменов не найден.
-    } catch (FileNotFoundException e) {
+    // Дожидаемся, пока журнал сбросит на диск все уже выполненные обмены,
+    // чтобы в выводе были видны последние операции.
+    // Если журнал недоступен, сообщаем об этом и выводим то, что уже есть на диске.
+    try {
+      historyJournal.flush();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IllegalStateException e) {
+      System.out.println("Ошибка записи в файл: " + e.getMessage());
+    }
+    //  Если файла еще нет, выводится сообщение "Файл с историей обменов не найден."
+    if (!Files.exists(historyFile)) {
       System.out.println("Файл с историей обменов не найден.");
+      return;
+    }
+    try {
+      for (ExchangeRecord exchangeRecord : new ExchangeHistory(historyFile, historyFormat).tail(query, tail)) {
+        System.out.println(exchangeRecord);
+      }
+    } catch (IOException e) {
+      metrics.recordError(ExchangeMetrics.ErrorCause.HISTORY_READ);
+      System.out.println("Ошибка чтения файла: " + e.getMessage());
+    }
+  }
+
+  // Метод для просмотра оборота по паре валют за сегодня
+  // Итоги берутся из накопительных итогов журнала (HistoryAggregates), поэтому файл истории не читается.
+  public void viewPairTotals(Scanner scanner) {
+    try {
+      System.out.print("Исходная валюта: ");
+      CurrencyEnum sourceCurrency = currencyByAbbreviation(scanner.nextLine().trim().toUpperCase());
+      System.out.print("Целевая валюта: ");
+      CurrencyEnum targetCurrency = currencyByAbbreviation(scanner.nextLine().trim().toUpperCase());
+      long startOfDay = LocalDate.now().atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+      System.out.println("Оборот за сегодня: "
+          + pairTotals(sourceCurrency, targetCurrency, startOfDay, Long.MAX_VALUE));
+    } catch (IllegalArgumentException e) {
+      System.out.println("Ошибка ввода: " + e.getMessage());
+    } catch (IllegalStateException e) {
+      System.out.println("Ошибка записи в файл: " + e.getMessage());
+    }
+  }
+
+  // Итоги обменов пары валют за время [fromMillis, toMillis) с точностью до интервала итогов.
+  // Перед запросом журнал сбрасывает на диск уже выполненные обмены, чтобы они попали в итоги;
+  // если журнал недоступен и обмены не сохранены, выбрасывается IllegalStateException.
+  public HistoryAggregates.Totals pairTotals(CurrencyEnum sourceCurrency,
+      CurrencyEnum targetCurrency, long fromMillis, long toMillis) {
+    try {
+      historyJournal.flush();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return historyJournal.getAggregates().totals(sourceCurrency, targetCurrency, fromMillis,
+        toMillis);
+  }
+
+  public ExchangeMetrics getMetrics() {
+    return metrics;
+  }
+
+  // Метод для завершения работы менеджера
+  // Закрывает журнал истории: оставшиеся в очереди записи сбрасываются на диск.
+  public void close() {
+    historyJournal.close();
+    metrics.unregisterMBean();
+  }
+
+  // Поиск валюты по сокращению (см. getCurrencyByAbbreviation) с учетом неудачного поиска в метриках.
+  // Используется консольным меню и сетевым сервером.
+  CurrencyEnum currencyByAbbreviation(String abbreviation) {
+    try {
+      return getCurrencyByAbbreviation(abbreviation);
+    } catch (IllegalArgumentException e) {
+      metrics.recordError(ExchangeMetrics.ErrorCause.UNKNOWN_CURRENCY);
+      throw e;
     }
   }
 
   // Метод для получения валюты по ее сокращению
-  // Этот закрытый метод используется для получения объекта CurrencyEnum по его сокращению.
-  // Он принимает на вход сокращение валюты в виде строки и проходит по всем значениям перечисления CurrencyEnum,
-  // сравнивая сокращение с именем или описанием валюты.
-  private CurrencyEnum getCurrencyByAbbreviation(String abbreviation) {
-    //  Этот цикл проходит по всем значениям перечисления CurrencyEnum.
-    for (CurrencyEnum currency : CurrencyEnum.values()) {
-      // Внутри цикла проверяется, совпадает ли сокращение валюты (abbreviation)
-      // с именем или описанием текущей валюты.
-      // Если есть совпадение, возвращается текущий объект currency.
-      if (currency.name().equals(abbreviation) || currency.getDescription()
-              .equalsIgnoreCase(abbreviation)) {
-        return currency;
-      }
+  // Этот метод (доступен в пределах пакета) используется для получения объекта CurrencyEnum по его сокращению.
+  // Он принимает на вход сокращение валюты в виде строки и сравнивает его с кодом или описанием валюты.
+  static CurrencyEnum getCurrencyByAbbreviation(String abbreviation) {
+    //  Сначала валюта ищется по коду (без учета регистра) в заранее вычисленной таблице кодов,
+    //  затем - по описанию. Оба поиска не копируют массив CurrencyEnum.values().
+    CurrencyEnum currency = CurrencyEnum.fromCode(abbreviation);
+    if (currency == null) {
+      currency = CurrencyEnum.fromDescription(abbreviation);
+    }
+    if (currency != null) {
+      return currency;
     }
     //  Если ни одна из валют не соответствует переданному сокращению, генерируется исключение
     //  типа IllegalArgumentException с сообщением "Неверное сокращение валюты".
@@ -0,0 +1,270 @@
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/* Класс ExchangeMetrics собирает метрики обменов и журнала истории:
+   счетчики обменов по парам валют, гистограммы задержек пересчета, добавления в журнал
+   и сброса журнала на диск, счетчики ошибок по причинам и объем записанных данных.
+   Все счетчики - LongAdder в плоских массивах, индексируемых порядковыми номерами валют
+   (как в CrossRateMatrix), поэтому запись метрик из многих потоков не создает объектов
+   и не упирается в один общий счетчик.
+   Один вызов System.nanoTime() стоит десятки наносекунд - сравнимо с самим пересчетом, поэтому
+   задержки на горячих путях замеряются выборочно: в среднем одна операция из metrics.sampling
+   (по умолчанию 8; 1 - замерять каждую). Счетчики пар при этом учитывают каждый обмен.
+   Замеры задержек и счетчики пар можно отключить системным свойством -Dmetrics.enabled=false;
+   редкие события (ошибки, сброс пачек журнала) считаются и замеряются всегда.
+   Метрики публикуются через JMX (ExchangeMetricsMXBean) и выводятся текстом методом dump().
+ */
+public final class ExchangeMetrics implements ExchangeMetricsMXBean {
+
+  // Имя, под которым метрики регистрируются в JMX
+  public static final String OBJECT_NAME = "CurrencyExchange:type=ExchangeMetrics";
+
+  // Количество валют - размер одной строки матрицы счетчиков пар
+  private static final int SIZE = CurrencyEnum.count();
+
+  // Причины ошибок, которые учитываются отдельно
+  public enum ErrorCause {
+    INVALID_AMOUNT("Неверная сумма"),
+    UNKNOWN_CURRENCY("Неизвестная валюта"),
+    UNSUPPORTED_PAIR("Нет курса для пары валют"),
+    JOURNAL_UNAVAILABLE("Журнал истории недоступен"),
+    HISTORY_WRITE("Ошибка записи истории"),
+    HISTORY_READ("Ошибка чтения истории");
+
+    private final String description;
+
+    ErrorCause(String description) {
+      this.description = description;
+    }
+
+    public String getDescription() {
+      return description;
+    }
+  }
+
+  // Частота выборочных замеров по умолчанию: одна операция из DEFAULT_SAMPLING
+  public static final int DEFAULT_SAMPLING = 8;
+
+  // Включены ли замеры задержек и счетчики пар
+  private final boolean enabled;
+  // Маска выборки: операция замеряется, если случайное число & samplingMask == 0
+  private final int samplingMask;
+  // Счетчики обменов по парам: ячейка source.ordinal() * SIZE + target.ordinal()
+  private final LongAdder[] pairCounts = new LongAdder[SIZE * SIZE];
+  // Счетчики ошибок: ячейка ErrorCause.ordinal()
+  private final LongAdder[] errorCounts = new LongAdder[ErrorCause.values().length];
+  private final LatencyHistogram conversionLatency = new LatencyHistogram();
+  private final LatencyHistogram appendLatency = new LatencyHistogram();
+  private final LatencyHistogram flushLatency = new LatencyHistogram();
+  private final LongAdder recordsWritten = new LongAdder();
+  private final LongAdder bytesWritten = new LongAdder();
+  // Имя, под которым метрики зарегистрированы в JMX; null - не зарегистрированы
+  private ObjectName registeredName;
+
+  public ExchangeMetrics(boolean enabled) {
+    this(enabled, DEFAULT_SAMPLING);
+  }
+
+  // sampling - в среднем одна замеряемая операция из sampling (округляется вверх до степени двойки)
+  public ExchangeMetrics(boolean enabled, int sampling) {
+    if (sampling <= 0) {
+      throw new IllegalArgumentException("Частота замеров должна быть положительной.");
+    }
+    this.enabled = enabled;
+    this.samplingMask = sampling == 1 ? 0 : Integer.highestOneBit(sampling - 1) * 2 - 1;
+    for (int i = 0; i < pairCounts.length; i++) {
+      pairCounts[i] = new LongAdder();
+    }
+    for (int i = 0; i < errorCounts.length; i++) {
+      errorCounts[i] = new LongAdder();
+    }
+  }
+
+  // Создает метрики по системным свойствам metrics.enabled (по умолчанию true)
+  // и metrics.sampling (по умолчанию DEFAULT_SAMPLING)
+  public static ExchangeMetrics fromSystemProperty() {
+    return new ExchangeMetrics(Boolean.parseBoolean(System.getProperty("metrics.enabled", "true")),
+        Integer.getInteger("metrics.sampling", DEFAULT_SAMPLING));
+  }
+
+  // Начало выборочного замера задержки: текущее время в наносекундах
+  // или 0, если эта операция не замеряется (или замеры отключены)
+  public long startTimer() {
+    if (!enabled || (ThreadLocalRandom.current().nextInt() & samplingMask) != 0) {
+      return 0;
+    }
+    return System.nanoTime();
+  }
+
+  // Учитывает выполненный обмен: счетчик пары и, если операция замерялась,
+  // задержку пересчета от startNanos (см. startTimer)
+  public void recordConversion(CurrencyEnum sourceCurrency, CurrencyEnum targetCurrency,
+      long startNanos) {
+    if (enabled) {
+      pairCounts[sourceCurrency.ordinal() * SIZE + targetCurrency.ordinal()].increment();
+      if (startNanos != 0) {
+        conversionLatency.record(System.nanoTime() - startNanos);
+      }
+    }
+  }
+
+  // Учитывает добавление записи в журнал: задержку от startNanos, если операция замерялась
+  public void recordAppend(long startNanos) {
+    if (startNanos != 0) {
+      appendLatency.record(System.nanoTime() - startNanos);
+    }
+  }
+
+  // Учитывает сброс пачки журнала на диск: records записей, bytes байт и задержку от startNanos.
+  // Пачки сбрасываются редко, поэтому startNanos для них берется из startFlushTimer.
+  public void recordFlush(long startNanos, long records, long bytes) {
+    if (startNanos != 0) {
+      flushLatency.record(System.nanoTime() - startNanos);
+    }
+    recordsWritten.add(records);
+    bytesWritten.add(bytes);
+  }
+
+  // Начало замера сброса пачки журнала: замеряется каждый сброс, если метрики включены
+  public long startFlushTimer() {
+    return enabled ? System.nanoTime() : 0;
+  }
+
+  // Учитывает ошибку
+  public void recordError(ErrorCause cause) {
+    errorCounts[cause.ordinal()].increment();
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  @Override
+  public long getExchangeCount() {
+    long count = 0;
+    for (LongAdder pairCount : pairCounts) {
+      count += pairCount.sum();
+    }
+    return count;
+  }
+
+  @Override
+  public Map<String, Long> getPairCounts() {
+    Map<String, Long> counts = new LinkedHashMap<>();
+    for (int i = 0; i < pairCounts.length; i++) {
+      long count = pairCounts[i].sum();
+      if (count > 0) {
+        counts.put(CurrencyEnum.byOrdinal(i / SIZE) + " -> " + CurrencyEnum.byOrdinal(i % SIZE),
+            count);
+      }
+    }
+    return counts;
+  }
+
+  @Override
+  public Map<String, Long> getErrorCounts() {
+    Map<String, Long> counts = new LinkedHashMap<>();
+    for (ErrorCause cause : ErrorCause.values()) {
+      long count = errorCounts[cause.ordinal()].sum();
+      if (count > 0) {
+        counts.put(cause.getDescription(), count);
+      }
+    }
+    return counts;
+  }
+
+  @Override
+  public LatencyHistogram.Snapshot getConversionLatency() {
+    return conversionLatency.snapshot();
+  }
+
+  @Override
+  public LatencyHistogram.Snapshot getAppendLatency() {
+    return appendLatency.snapshot();
+  }
+
+  @Override
+  public LatencyHistogram.Snapshot getFlushLatency() {
+    return flushLatency.snapshot();
+  }
+
+  @Override
+  public long getRecordsWritten() {
+    return recordsWritten.sum();
+  }
+
+  @Override
+  public long getBytesWritten() {
+    return bytesWritten.sum();
+  }
+
+  @Override
+  public String dump() {
+    StringBuilder report = new StringBuilder("Метрики обмена");
+    if (!enabled) {
+      report.append(" (замеры задержек отключены: metrics.enabled=false)");
+    } else if (samplingMask != 0) {
+      report.append(" (задержки пересчета и добавления замеряются у 1 из ")
+          .append(samplingMask + 1).append(" операций)");
+    }
+    report.append(":\n");
+    report.append("Обменов: ").append(getExchangeCount()).append('\n');
+    for (Map.Entry<String, Long> entry : getPairCounts().entrySet()) {
+      report.append("  ").append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+    }
+    report.append("Задержка пересчета: ").append(getConversionLatency()).append('\n');
+    report.append("Задержка добавления в журнал: ").append(getAppendLatency()).append('\n');
+    report.append("Задержка сброса журнала: ").append(getFlushLatency()).append('\n');
+    report.append("Записано в журнал: ").append(getRecordsWritten()).append(" записей, ")
+        .append(getBytesWritten()).append(" байт\n");
+    Map<String, Long> errors = getErrorCounts();
+    report.append("Ошибок: ").append(errors.values().stream().mapToLong(Long::longValue).sum());
+    for (Map.Entry<String, Long> entry : errors.entrySet()) {
+      report.append("\n  ").append(entry.getKey()).append(": ").append(entry.getValue());
+    }
+    return report.toString();
+  }
+
+  @Override
+  public void reset() {
+    for (LongAdder pairCount : pairCounts) {
+      pairCount.reset();
+    }
+    for (LongAdder errorCount : errorCounts) {
+      errorCount.reset();
+    }
+    conversionLatency.reset();
+    appendLatency.reset();
+    flushLatency.reset();
+    recordsWritten.reset();
+    bytesWritten.reset();
+  }
+
+  // Регистрирует метрики в платформенном MBean-сервере под именем OBJECT_NAME
+  public synchronized void registerMBean() throws JMException {
+    ObjectName name = new ObjectName(OBJECT_NAME);
+    ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+    registeredName = name;
+  }
+
+  // Снимает регистрацию в JMX, если метрики были зарегистрированы
+  public synchronized void unregisterMBean() {
+    if (registeredName == null) {
+      return;
+    }
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      server.unregisterMBean(registeredName);
+    } catch (JMException e) {
+      System.out.println("Ошибка отмены регистрации метрик: " + e.getMessage());
+    }
+    registeredName = null;
+  }
+}
@@ -0,0 +1,40 @@
+import java.util.Map;
+
+/* Интерфейс ExchangeMetricsMXBean описывает метрики обмена, которые публикуются через JMX
+   (jconsole, VisualVM: CurrencyExchange:type=ExchangeMetrics).
+   Задержки возвращаются как составные значения с количеством, средним, процентилями и максимумом.
+ */
+public interface ExchangeMetricsMXBean {
+
+  // Включены ли замеры задержек и счетчики пар (системное свойство metrics.enabled)
+  boolean isEnabled();
+
+  // Количество выполненных обменов
+  long getExchangeCount();
+
+  // Количество обменов по парам валют ("USD -> EUR"); пары без обменов не включаются
+  Map<String, Long> getPairCounts();
+
+  // Количество ошибок по причинам; причины без ошибок не включаются
+  Map<String, Long> getErrorCounts();
+
+  // Задержка пересчета суммы при обмене (выборочные замеры, см. ExchangeMetrics)
+  LatencyHistogram.Snapshot getConversionLatency();
+
+  // Задержка добавления записи в журнал истории (включая ожидание места в буфере)
+  LatencyHistogram.Snapshot getAppendLatency();
+
+  // Задержка сброса пачки записей журнала на диск
+  LatencyHistogram.Snapshot getFlushLatency();
+
+  // Количество записей и байт, записанных в файл журнала
+  long getRecordsWritten();
+
+  long getBytesWritten();
+
+  // Текстовый отчет по всем метрикам (тот же, что выводит пункт меню "Метрики")
+  String dump();
+
+  // Обнуляет все счетчики и гистограммы
+  void reset();
+}
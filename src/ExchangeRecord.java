@@ -1,11 +1,13 @@
-import java.text.DecimalFormat;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 
 // Определяем класс ExchangeRecord, который будет использоваться для хранения информации о конкретной операции обмена валют
 public class ExchangeRecord {
 
-  // Объявляем приватное поле date типа Date для хранения даты операции обмена
-  private final Date date;
+  // Объявляем приватное поле epochMillis для хранения даты операции обмена в миллисекундах от эпохи
+  // (примитивное значение вместо объекта Date)
+  private final long epochMillis;
   // Объявляем приватное поле amount типа double для хранения суммы, которая обменивается
   private final double amount;
   // Объявляем приватное поле sourceCurrency типа CurrencyEnum для хранения исходной валюты операции
@@ -14,14 +16,15 @@ public class ExchangeRecord {
   private final CurrencyEnum targetCurrency;
   // Объявляем приватное поле resultAmount типа double для хранения результата обмена в целевой валюте
   private final double resultAmount;
-  // Объявляем и инициализируем поле decimalFormat для форматирования вывода суммы результата с двумя знаками после запятой
-  private final DecimalFormat decimalFormat = new DecimalFormat("#.##");
+  // Объявляем приватное поле rateVersion для хранения версии снимка курсов, по которому выполнен обмен
+  // (0 - версия неизвестна, например для записей из старых журналов)
+  private final int rateVersion;
 
   // Конструктор класса ExchangeRecord, который принимает параметры для инициализации всех полей класса
-  public ExchangeRecord(Date date, double amount, CurrencyEnum sourceCurrency,
-      CurrencyEnum targetCurrency, double resultAmount) {
-    // Инициализация поля date
-    this.date = date;
+  public ExchangeRecord(long epochMillis, double amount, CurrencyEnum sourceCurrency,
+      CurrencyEnum targetCurrency, double resultAmount, int rateVersion) {
+    // Инициализация поля epochMillis
+    this.epochMillis = epochMillis;
     // Инициализация поля amount
     this.amount = amount;
     // Инициализация поля sourceCurrency
@@ -30,16 +33,51 @@ public class ExchangeRecord {
     this.targetCurrency = targetCurrency;
     // Инициализация поля resultAmount
     this.resultAmount = resultAmount;
+    // Инициализация поля rateVersion
+    this.rateVersion = rateVersion;
+  }
+
+  // Методы доступа к полям записи; используются при записи истории в двоичном формате и при анализе истории
+  public long getEpochMillis() {
+    return epochMillis;
+  }
+
+  public Date getDate() {
+    return new Date(epochMillis);
+  }
+
+  public double getAmount() {
+    return amount;
+  }
+
+  public CurrencyEnum getSourceCurrency() {
+    return sourceCurrency;
+  }
+
+  public CurrencyEnum getTargetCurrency() {
+    return targetCurrency;
+  }
+
+  public double getResultAmount() {
+    return resultAmount;
+  }
+
+  public int getRateVersion() {
+    return rateVersion;
   }
 
   // Переопределение метода toString() класса Object для предоставления строкового представления объекта ExchangeRecord
   @Override
   public String toString() {
     // Формируем и возвращаем строку, содержащую информацию об операции обмена,
-    // включая дату, сумму в исходной валюте, сумму в целевой валюте и названия валют.
-    // Используем decimalFormat для форматирования суммы результата.
-    return "Дата: " + date + ", Сумма: " + amount + " " + sourceCurrency +
-        " -> " + decimalFormat.format(resultAmount) + " " + targetCurrency.getDescription();
+    // включая дату, сумму в исходной валюте, сумму в целевой валюте, названия валют и версию курсов:
+    //   Дата: <дата>, Сумма: <сумма> <SRC> -> <результат "#.##"> <описание валюты>, Версия курсов: <N>
+    // Строка формируется тем же кодировщиком RecordTextEncoder, которым журнал пишет "history.txt",
+    // поэтому вывод на экран и строка в файле всегда совпадают.
+    ByteBuffer buffer = ByteBuffer.allocate(HistoryFormat.MAX_ENCODED_SIZE);
+    RecordTextEncoder.forCurrentThread().encode(epochMillis, amount, sourceCurrency,
+        targetCurrency, resultAmount, rateVersion, buffer);
+    return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
   }
 }
 
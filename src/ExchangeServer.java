@@ -0,0 +1,186 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/* Класс ExchangeServer - сетевой интерфейс к ExchangeManager по простому строковому протоколу поверх TCP.
+   Каждое соединение обслуживается в отдельном потоке; на JDK 21+ это виртуальные потоки
+   (Executors.newVirtualThreadPerTaskExecutor), на более старых JDK - кэширующий пул обычных потоков.
+   Протокол (UTF-8, одна строка - один запрос):
+     запрос:  <сумма> <валюта> <валюта>     например "100 USD EUR"
+     ответ:   OK <результат> <версия курсов> например "OK 85.0 1"
+              ERR <сообщение>               если запрос неверен
+   Строка QUIT закрывает соединение. Все соединения работают с одним ExchangeManager,
+   поэтому история обменов со всех клиентов попадает в общий журнал.
+ */
+public class ExchangeServer implements AutoCloseable {
+
+  // Порт по умолчанию
+  public static final int DEFAULT_PORT = 7070;
+
+  private final ExchangeManager exchangeManager;
+  private final ServerSocket serverSocket;
+  // Исполнитель, в котором обслуживаются соединения
+  private final ExecutorService connectionExecutor;
+  // Поток, принимающий новые соединения
+  private final Thread acceptThread;
+  // Открытые соединения клиентов; закрываются при остановке сервера, чтобы простаивающие
+  // соединения не задерживали ее
+  private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+
+  public ExchangeServer(ExchangeManager exchangeManager, int port) throws IOException {
+    this.exchangeManager = exchangeManager;
+    this.serverSocket = new ServerSocket();
+    this.serverSocket.setReuseAddress(true);
+    this.serverSocket.bind(new InetSocketAddress(port), 1024);
+    this.connectionExecutor = newConnectionExecutor();
+    this.acceptThread = new Thread(this::acceptConnections, "exchange-server-accept");
+  }
+
+  // Запускает прием соединений
+  public void start() {
+    acceptThread.start();
+  }
+
+  // Порт, на котором сервер принимает соединения (полезно, если был указан порт 0)
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  // Ждет завершения потока приема соединений (то есть закрытия сервера)
+  public void awaitTermination() throws InterruptedException {
+    acceptThread.join();
+  }
+
+  // Останавливает прием соединений, закрывает соединения клиентов (в том числе простаивающие,
+  // которые иначе ждали бы следующего запроса) и ждет завершения потоков обслуживания
+  @Override
+  public void close() throws IOException {
+    serverSocket.close();
+    for (Socket client : clients) {
+      closeQuietly(client);
+    }
+    connectionExecutor.shutdownNow();
+    try {
+      connectionExecutor.awaitTermination(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // Разбирает и выполняет одну строку запроса, возвращает строку ответа
+  String handle(String request) {
+    String[] parts = request.trim().split("\\s+");
+    if (parts.length != 3) {
+      return "ERR Ожидается: <сумма> <валюта> <валюта>";
+    }
+    try {
+      double amount = Double.parseDouble(parts[0]);
+      CurrencyEnum sourceCurrency = exchangeManager.currencyByAbbreviation(parts[1]);
+      CurrencyEnum targetCurrency = exchangeManager.currencyByAbbreviation(parts[2]);
+      RateSnapshot snapshot = exchangeManager.getRateSnapshot();
+      double resultAmount = exchangeManager.exchange(snapshot, System.currentTimeMillis(), amount,
+          sourceCurrency, targetCurrency);
+      return "OK " + resultAmount + " " + snapshot.getVersion();
+    } catch (NumberFormatException e) {
+      exchangeManager.getMetrics().recordError(ExchangeMetrics.ErrorCause.INVALID_AMOUNT);
+      return "ERR Неверная сумма: " + parts[0];
+    } catch (IllegalArgumentException | IllegalStateException e) {
+      return "ERR " + e.getMessage();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return "ERR Сервер останавливается.";
+    }
+  }
+
+  // Цикл приема соединений
+  private void acceptConnections() {
+    while (!serverSocket.isClosed()) {
+      try {
+        Socket socket = serverSocket.accept();
+        socket.setTcpNoDelay(true);
+        clients.add(socket);
+        // Соединение, принятое одновременно с остановкой, закрывается сразу
+        if (serverSocket.isClosed()) {
+          closeQuietly(socket);
+          return;
+        }
+        try {
+          connectionExecutor.execute(() -> serve(socket));
+        } catch (RejectedExecutionException e) {
+          closeQuietly(socket);
+          return;
+        }
+      } catch (SocketException e) {
+        // Сокет закрыт методом close()
+        return;
+      } catch (IOException e) {
+        System.out.println("Ошибка приема соединения: " + e.getMessage());
+      }
+    }
+  }
+
+  // Обслуживает одно соединение: читает запросы построчно и отвечает на каждый
+  private void serve(Socket socket) {
+    try (socket;
+        BufferedReader reader = new BufferedReader(
+            new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        Writer writer = new BufferedWriter(
+            new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null && !line.trim().equalsIgnoreCase("QUIT")) {
+        if (line.isBlank()) {
+          continue;
+        }
+        writer.write(handle(line));
+        writer.write('\n');
+        // Ответ отправляется сразу, если клиент не прислал следующих запросов (конвейерная обработка)
+        if (!reader.ready()) {
+          writer.flush();
+        }
+      }
+      writer.flush();
+    } catch (IOException e) {
+      // Клиент разорвал соединение или сервер остановлен - обслуживать больше нечего
+    } finally {
+      clients.remove(socket);
+    }
+  }
+
+  private void closeQuietly(Socket socket) {
+    clients.remove(socket);
+    try {
+      socket.close();
+    } catch (IOException e) {
+      // Соединение уже разорвано
+    }
+  }
+
+  // Создает исполнитель на виртуальных потоках, если JDK их поддерживает (21+),
+  // иначе - кэширующий пул потоков-демонов.
+  private static ExecutorService newConnectionExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+          .invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "exchange-server-connection");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+}
@@ -0,0 +1,123 @@
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Map;
+
+/* Класс FixedPointRateMatrix - матрица кросс-курсов для точного пересчета сумм в минимальных единицах.
+   Курс к базовой валюте берется в том десятичном виде, в котором он задан (0.85, 22.10),
+   и для каждой пары валют заранее вычисляется несократимая дробь
+     numerator / denominator = (targetRate * 10^targetMinorUnits) / (sourceRate * 10^sourceMinorUnits).
+   Результат в минимальных единицах целевой валюты равен amountMinor * numerator / denominator
+   с единственным округлением в конце, поэтому он точен для любого режима RoundingMode.
+   Обычно пересчет - одно умножение и одно деление над long (MoneyMath.divide).
+   Если произведение переполняет long или дробь пары не помещается в long,
+   расчет выполняется через BigDecimal (как и для режима RoundingMode.UNNECESSARY,
+   которому нужна проверка точности с исключением).
+   Как и CrossRateMatrix, объект неизменяем и строится заново при каждом обновлении курсов.
+ */
+public final class FixedPointRateMatrix {
+
+  // Количество валют - размер одной строки матрицы
+  private static final int SIZE = CurrencyEnum.count();
+
+  // Числители и знаменатели дробей пар в плоских массивах N×N;
+  // знаменатель 0 означает, что дробь не помещается в long или для пары нет курса
+  private final long[] numerators;
+  private final long[] denominators;
+  // Те же дроби в виде BigDecimal для запасного пути; null - для пары нет курса
+  private final BigDecimal[] exactNumerators;
+  private final BigDecimal[] exactDenominators;
+
+  private FixedPointRateMatrix(long[] numerators, long[] denominators,
+      BigDecimal[] exactNumerators, BigDecimal[] exactDenominators) {
+    this.numerators = numerators;
+    this.denominators = denominators;
+    this.exactNumerators = exactNumerators;
+    this.exactDenominators = exactDenominators;
+  }
+
+  // Строит матрицу из таблицы курсов к базовой валюте (в формате exchangeRates из ExchangeManager).
+  // Курс double переводится в десятичную дробь так же, как он записывается (BigDecimal.valueOf).
+  public static FixedPointRateMatrix fromRates(Map<CurrencyEnum, Double> rates) {
+    // Курс валюты, умноженный на 10^minorUnits: сколько минимальных единиц стоит единица базовой валюты
+    BigDecimal[] scaledRates = new BigDecimal[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      CurrencyEnum currency = CurrencyEnum.byOrdinal(i);
+      Double rate = rates.get(currency);
+      // Нулевой или бесконечный курс не дает дроби - пара считается не имеющей курса
+      if (rate != null && rate > 0 && !Double.isInfinite(rate)) {
+        scaledRates[i] = BigDecimal.valueOf(rate).movePointRight(currency.getMinorUnits());
+      }
+    }
+    long[] numerators = new long[SIZE * SIZE];
+    long[] denominators = new long[SIZE * SIZE];
+    BigDecimal[] exactNumerators = new BigDecimal[SIZE * SIZE];
+    BigDecimal[] exactDenominators = new BigDecimal[SIZE * SIZE];
+    for (int source = 0; source < SIZE; source++) {
+      for (int target = 0; target < SIZE; target++) {
+        if (scaledRates[source] == null || scaledRates[target] == null) {
+          continue;
+        }
+        // Приводим оба курса к общему масштабу, чтобы получить целые числитель и знаменатель,
+        // и сокращаем дробь: чем меньше числитель, тем больше суммы проходят по быстрому пути
+        int scale = Math.max(Math.max(scaledRates[target].scale(), scaledRates[source].scale()), 0);
+        BigInteger numerator = scaledRates[target].movePointRight(scale).toBigIntegerExact();
+        BigInteger denominator = scaledRates[source].movePointRight(scale).toBigIntegerExact();
+        BigInteger gcd = numerator.gcd(denominator);
+        numerator = numerator.divide(gcd);
+        denominator = denominator.divide(gcd);
+        int cell = source * SIZE + target;
+        exactNumerators[cell] = new BigDecimal(numerator);
+        exactDenominators[cell] = new BigDecimal(denominator);
+        if (numerator.bitLength() <= 63 && denominator.bitLength() <= 63) {
+          numerators[cell] = numerator.longValue();
+          denominators[cell] = denominator.longValue();
+        }
+      }
+    }
+    return new FixedPointRateMatrix(numerators, denominators, exactNumerators, exactDenominators);
+  }
+
+  // Проверяет, есть ли курс для пары валют
+  public boolean supports(CurrencyEnum sourceCurrency, CurrencyEnum targetCurrency) {
+    return exactDenominators[sourceCurrency.ordinal() * SIZE + targetCurrency.ordinal()] != null;
+  }
+
+  // Пересчитывает сумму amountMinor (в минимальных единицах исходной валюты) в минимальные
+  // единицы целевой валюты с округлением режимом roundingMode.
+  // Если для пары нет курса или результат не помещается в long, выбрасывается IllegalArgumentException.
+  public long convert(long amountMinor, CurrencyEnum sourceCurrency, CurrencyEnum targetCurrency,
+      RoundingMode roundingMode) {
+    int cell = sourceCurrency.ordinal() * SIZE + targetCurrency.ordinal();
+    long denominator = denominators[cell];
+    if (denominator != 0) {
+      long numerator = numerators[cell];
+      long product = amountMinor * numerator;
+      // Произведение помещается в long, если старшие 64 бита полного 128-битного произведения
+      // совпадают со знаком младших; проверка не выбрасывает исключений, в отличие от multiplyExact
+      if (Math.multiplyHigh(amountMinor, numerator) == (product >> 63)
+          && roundingMode != RoundingMode.UNNECESSARY) {
+        return MoneyMath.divide(product, denominator, roundingMode);
+      }
+    }
+    return convertExact(amountMinor, cell, roundingMode);
+  }
+
+  // Запасной путь через BigDecimal для сумм и дробей, которые не помещаются в long
+  private long convertExact(long amountMinor, int cell, RoundingMode roundingMode) {
+    if (exactDenominators[cell] == null) {
+      throw new IllegalArgumentException("Неверные валюты. Пожалуйста, выберите существующие валюты.");
+    }
+    BigDecimal result;
+    try {
+      result = BigDecimal.valueOf(amountMinor).multiply(exactNumerators[cell])
+          .divide(exactDenominators[cell], 0, roundingMode);
+    } catch (ArithmeticException e) {
+      throw new IllegalArgumentException("Результат обмена требует округления.");
+    }
+    if (result.unscaledValue().bitLength() > 63) {
+      throw new IllegalArgumentException("Результат обмена слишком велик.");
+    }
+    return result.longValue();
+  }
+}
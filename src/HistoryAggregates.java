@@ -0,0 +1,483 @@
+import java.io.IOException;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/* Класс HistoryAggregates - накопительные итоги обменов по парам валют и интервалам времени.
+   Для каждой пары (исходная валюта, целевая валюта) и каждого интервала длиной bucketMillis
+   хранятся количество обменов, сумма обмененных сумм, сумма результатов и наименьшая и наибольшая
+   сумма обмена. Суммы хранятся точно, в минимальных единицах валюты (см. MoneyMath).
+   Итоги лежат в плоских массивах long: ячейка интервала i и пары (source, target) имеет номер
+     i * PAIRS + source.ordinal() * SIZE + target.ordinal(),
+   поэтому учет записи - несколько сложений без создания объектов, а запрос вида
+   "оборот EUR -> PLN за сегодня" складывает итоги нескольких интервалов, не читая журнал.
+   Журнал HistoryJournal обновляет итоги по мере записи и периодически сохраняет их контрольной точкой
+   в файл "<имя журнала>.agg" вместе с номером активного сегмента (см. HistorySegments) и длиной его
+   учтенной части. При запуске итоги загружаются из контрольной точки, и заново читаются только
+   хвост этого сегмента и сегменты, закрытые после нее.
+   Если контрольной точки нет или она не соответствует журналу, итоги строятся по всему журналу.
+   Чтобы итоги и контрольная точка не росли на интервал каждый час, интервалы старше недели
+   (считая от последнего интервала) сворачиваются в суточные (сутки UTC): за год набирается около
+   365 суточных интервалов вместо 8760 часовых. Запросы по свернутой части точны до суток.
+   Методы синхронизированы: итоги обновляет поток-писатель журнала, а читают потоки запросов.
+ */
+public class HistoryAggregates {
+
+  // Длина интервала итогов по умолчанию - один час
+  public static final long DEFAULT_BUCKET_MILLIS = 3_600_000;
+  // Как часто журнал сохраняет контрольную точку итогов
+  public static final long DEFAULT_CHECKPOINT_INTERVAL_MILLIS = 60_000;
+  // Интервалы, которые начинаются раньше последнего интервала больше чем на ROLLUP_AFTER_MILLIS,
+  // сворачиваются в суточные
+  public static final long ROLLUP_AFTER_MILLIS = 7 * 24 * 3_600_000L;
+  private static final long DAY_MILLIS = 24 * 3_600_000L;
+
+  // Количество валют и количество пар валют - размер итогов одного интервала
+  private static final int SIZE = CurrencyEnum.count();
+  private static final int PAIRS = SIZE * SIZE;
+  // Суммы журнала переводятся в минимальные единицы с тем же округлением по умолчанию, что и при обмене
+  private static final RoundingMode ROUNDING = RoundingMode.HALF_EVEN;
+  // Признак файла контрольной точки и размер заголовка:
+  // признак ("AGG2"), количество пар, длина интервала, номер сегмента, длина учтенной части сегмента,
+  // количество интервалов
+  private static final int MAGIC = 0x41474732;
+  private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8 + 4;
+  // Размер итогов одного интервала в файле: начало интервала и пять массивов по PAIRS значений
+  private static final int BUCKET_SIZE = 8 + 5 * PAIRS * 8;
+
+  // Файл контрольной точки; null - итоги не сохраняются
+  private final Path checkpointFile;
+  // Длина интервала в миллисекундах
+  private final long bucketMillis;
+  // Начала интервалов, упорядоченные по времени
+  private long[] bucketStarts = new long[16];
+  private int bucketCount;
+  // Итоги интервалов: по PAIRS ячеек на интервал
+  private long[] counts = new long[16 * PAIRS];
+  private long[] amountSums = new long[16 * PAIRS];
+  private long[] resultSums = new long[16 * PAIRS];
+  private long[] minAmounts = new long[16 * PAIRS];
+  private long[] maxAmounts = new long[16 * PAIRS];
+  // Номер сегмента журнала, в который идет запись, и длина его части, которая уже учтена в итогах
+  private long segmentSequence;
+  private long logLength;
+  // Интервалы, которые начинаются раньше этой даты, суточные (см. rollUp)
+  private long rolledUpBefore = Long.MIN_VALUE;
+
+  private HistoryAggregates(Path checkpointFile, long bucketMillis) {
+    if (bucketMillis <= 0) {
+      throw new IllegalArgumentException("Длина интервала итогов должна быть положительной.");
+    }
+    this.checkpointFile = checkpointFile;
+    this.bucketMillis = bucketMillis;
+  }
+
+  // Файл контрольной точки итогов для журнала
+  public static Path checkpointFileFor(Path log) {
+    return log.resolveSibling(log.getFileName() + ".agg");
+  }
+
+  // Пустые итоги, которые не сохраняются на диск (если восстановить итоги журнала не удалось)
+  public static HistoryAggregates empty(long bucketMillis) {
+    return new HistoryAggregates(null, bucketMillis);
+  }
+
+  // Восстанавливает итоги журнала: загружает контрольную точку и дочитывает сегменты после нее.
+  // Контрольная точка с другой длиной интервала, другим набором валют, более поздним сегментом
+  // или длиной больше активного файла (журнал был заменен) не используется -
+  // тогда итоги строятся по всему журналу.
+  public static HistoryAggregates recover(Path log, HistoryFormat format, long bucketMillis)
+      throws IOException {
+    HistoryAggregates aggregates = new HistoryAggregates(checkpointFileFor(log), bucketMillis);
+    long activeSequence = HistorySegments.activeSequence(log);
+    long length = Files.exists(log) ? Files.size(log) : 0;
+    if (!aggregates.load() || aggregates.segmentSequence > activeSequence
+        || (aggregates.segmentSequence == activeSequence && aggregates.logLength > length)) {
+      aggregates.clear();
+    }
+    aggregates.replay(log, format);
+    aggregates.segmentSequence = activeSequence;
+    aggregates.logLength = length;
+    return aggregates;
+  }
+
+  // Строит итоги по всему журналу, не используя контрольную точку
+  public static HistoryAggregates rebuild(Path log, HistoryFormat format, long bucketMillis)
+      throws IOException {
+    HistoryAggregates aggregates = new HistoryAggregates(checkpointFileFor(log), bucketMillis);
+    aggregates.clear();
+    aggregates.replay(log, format);
+    aggregates.segmentSequence = HistorySegments.activeSequence(log);
+    aggregates.logLength = Files.exists(log) ? Files.size(log) : 0;
+    return aggregates;
+  }
+
+  public long getBucketMillis() {
+    return bucketMillis;
+  }
+
+  // Длина активного файла журнала, которая учтена в итогах
+  public synchronized long getLogLength() {
+    return logLength;
+  }
+
+  // Проверяет, что обмен можно учесть в итогах: обе суммы переводятся в минимальные единицы
+  // так же, как в add. NaN, бесконечность и слишком большая сумма дают IllegalArgumentException.
+  public static void checkAmounts(double amount, CurrencyEnum sourceCurrency,
+      CurrencyEnum targetCurrency, double resultAmount) {
+    MoneyMath.toMinorUnits(amount, sourceCurrency, ROUNDING);
+    MoneyMath.toMinorUnits(resultAmount, targetCurrency, ROUNDING);
+  }
+
+  // Учитывает обмен amount (в исходной валюте) на resultAmount (в целевой валюте) с датой epochMillis
+  public synchronized void add(long epochMillis, double amount, CurrencyEnum sourceCurrency,
+      CurrencyEnum targetCurrency, double resultAmount) {
+    long amountMinor = MoneyMath.toMinorUnits(amount, sourceCurrency, ROUNDING);
+    long resultMinor = MoneyMath.toMinorUnits(resultAmount, targetCurrency, ROUNDING);
+    int cell = bucketSlot(Math.floorDiv(epochMillis, bucketMillis) * bucketMillis) * PAIRS
+        + sourceCurrency.ordinal() * SIZE + targetCurrency.ordinal();
+    if (counts[cell] == 0) {
+      minAmounts[cell] = amountMinor;
+      maxAmounts[cell] = amountMinor;
+    } else {
+      minAmounts[cell] = Math.min(minAmounts[cell], amountMinor);
+      maxAmounts[cell] = Math.max(maxAmounts[cell], amountMinor);
+    }
+    counts[cell]++;
+    amountSums[cell] += amountMinor;
+    resultSums[cell] += resultMinor;
+  }
+
+  // Отмечает, что итоги учитывают активный файл длиной logLength (вызывается после записи пачки)
+  public synchronized void advance(long logLength) {
+    this.logLength = logLength;
+  }
+
+  // Отмечает переход журнала к новому пустому сегменту с номером sequence (после ротации)
+  public synchronized void startSegment(long sequence) {
+    this.segmentSequence = sequence;
+    this.logLength = 0;
+  }
+
+  // Итоги обменов пары валют за время [fromMillis, toMillis). Границы округляются до интервалов:
+  // учитываются интервалы, которые начинаются не раньше начала интервала fromMillis и раньше toMillis.
+  // В свернутой части итогов (старше недели) интервал - сутки UTC.
+  // Итоги за всё время - totals(..., Long.MIN_VALUE, Long.MAX_VALUE).
+  public synchronized Totals totals(CurrencyEnum sourceCurrency, CurrencyEnum targetCurrency,
+      long fromMillis, long toMillis) {
+    int pair = sourceCurrency.ordinal() * SIZE + targetCurrency.ordinal();
+    // Начало интервала fromMillis; у самых ранних дат (Long.MIN_VALUE) оно не помещается в long,
+    // тогда поиск начинается с первого интервала
+    long width = fromMillis < rolledUpBefore ? DAY_MILLIS : bucketMillis;
+    long bucket = Math.floorDiv(fromMillis, width);
+    long from = bucket < Long.MIN_VALUE / width ? Long.MIN_VALUE : bucket * width;
+    long count = 0;
+    long amountSum = 0;
+    long resultSum = 0;
+    long minAmount = Long.MAX_VALUE;
+    long maxAmount = Long.MIN_VALUE;
+    for (int i = firstBucketAtOrAfter(from); i < bucketCount && bucketStarts[i] < toMillis; i++) {
+      int cell = i * PAIRS + pair;
+      if (counts[cell] == 0) {
+        continue;
+      }
+      count += counts[cell];
+      amountSum += amountSums[cell];
+      resultSum += resultSums[cell];
+      minAmount = Math.min(minAmount, minAmounts[cell]);
+      maxAmount = Math.max(maxAmount, maxAmounts[cell]);
+    }
+    if (count == 0) {
+      minAmount = 0;
+      maxAmount = 0;
+    }
+    return new Totals(sourceCurrency, targetCurrency, count, amountSum, resultSum, minAmount,
+        maxAmount);
+  }
+
+  // Сохраняет итоги в файл контрольной точки. Снимок массивов снимается под блокировкой,
+  // а файл пишется без нее во временный файл и затем атомарно заменяет прежний,
+  // поэтому сбой посреди сохранения оставляет предыдущую целую контрольную точку.
+  // Перед сохранением устаревшие часовые интервалы сворачиваются в суточные.
+  public void checkpoint() throws IOException {
+    if (checkpointFile == null) {
+      return;
+    }
+    ByteBuffer buffer;
+    synchronized (this) {
+      rollUp();
+      buffer = ByteBuffer.allocate(HEADER_SIZE + bucketCount * BUCKET_SIZE);
+      buffer.putInt(MAGIC).putInt(PAIRS).putLong(bucketMillis).putLong(segmentSequence)
+          .putLong(logLength).putInt(bucketCount);
+      for (int i = 0; i < bucketCount; i++) {
+        buffer.putLong(bucketStarts[i]);
+        putCells(buffer, counts, i);
+        putCells(buffer, amountSums, i);
+        putCells(buffer, resultSums, i);
+        putCells(buffer, minAmounts, i);
+        putCells(buffer, maxAmounts, i);
+      }
+    }
+    buffer.flip();
+    Path temporary = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      channel.force(false);
+    }
+    HistorySegments.moveAtomically(temporary, checkpointFile);
+  }
+
+  // Номер интервала с началом bucketStart; отсутствующий интервал добавляется.
+  // Записи приходят почти по порядку времени, поэтому обычно это последний интервал.
+  private int bucketSlot(long bucketStart) {
+    if (bucketCount > 0 && bucketStarts[bucketCount - 1] == bucketStart) {
+      return bucketCount - 1;
+    }
+    int slot = Arrays.binarySearch(bucketStarts, 0, bucketCount, bucketStart);
+    if (slot >= 0) {
+      return slot;
+    }
+    slot = -slot - 1;
+    if (bucketCount == bucketStarts.length) {
+      grow(bucketCount * 2);
+    }
+    // Запоздавшая запись более раннего интервала: сдвигаем следующие интервалы
+    if (slot < bucketCount) {
+      System.arraycopy(bucketStarts, slot, bucketStarts, slot + 1, bucketCount - slot);
+      for (long[] cells : new long[][] {counts, amountSums, resultSums, minAmounts, maxAmounts}) {
+        System.arraycopy(cells, slot * PAIRS, cells, (slot + 1) * PAIRS,
+            (bucketCount - slot) * PAIRS);
+        Arrays.fill(cells, slot * PAIRS, (slot + 1) * PAIRS, 0);
+      }
+    }
+    bucketStarts[slot] = bucketStart;
+    bucketCount++;
+    return slot;
+  }
+
+  // Сворачивает интервалы, которые начинаются раньше суток, отстоящих от последнего интервала
+  // на ROLLUP_AFTER_MILLIS, в суточные: итоги интервалов одних суток складываются в интервал
+  // с началом в полночь UTC. Уже свернутые сутки не меняются, поэтому проход по ним только читает
+  // начала интервалов. Запоздавшая запись свернутых суток попадает в отдельный часовой интервал
+  // и сворачивается при следующем вызове.
+  private void rollUp() {
+    if (bucketMillis >= DAY_MILLIS || bucketCount == 0
+        || bucketStarts[bucketCount - 1] < Long.MIN_VALUE + ROLLUP_AFTER_MILLIS + DAY_MILLIS) {
+      return;
+    }
+    long cutoff = Math.floorDiv(bucketStarts[bucketCount - 1] - ROLLUP_AFTER_MILLIS, DAY_MILLIS)
+        * DAY_MILLIS;
+    int kept = 0;
+    int i = 0;
+    for (; i < bucketCount && bucketStarts[i] < cutoff; i++) {
+      long day = Math.floorDiv(bucketStarts[i], DAY_MILLIS) * DAY_MILLIS;
+      if (kept > 0 && bucketStarts[kept - 1] == day) {
+        mergeBucket(i, kept - 1);
+      } else {
+        moveBucket(i, kept);
+        bucketStarts[kept++] = day;
+      }
+    }
+    for (; i < bucketCount; i++) {
+      moveBucket(i, kept++);
+    }
+    // Освободившиеся ячейки обнуляются: новый интервал в конце массивов должен начинаться с нулей
+    for (long[] cells : new long[][] {counts, amountSums, resultSums, minAmounts, maxAmounts}) {
+      Arrays.fill(cells, kept * PAIRS, bucketCount * PAIRS, 0);
+    }
+    bucketCount = kept;
+    rolledUpBefore = Math.max(rolledUpBefore, cutoff);
+  }
+
+  // Прибавляет итоги интервала from к итогам интервала to
+  private void mergeBucket(int from, int to) {
+    for (int source = from * PAIRS, target = to * PAIRS, end = source + PAIRS; source < end;
+        source++, target++) {
+      if (counts[source] == 0) {
+        continue;
+      }
+      if (counts[target] == 0) {
+        minAmounts[target] = minAmounts[source];
+        maxAmounts[target] = maxAmounts[source];
+      } else {
+        minAmounts[target] = Math.min(minAmounts[target], minAmounts[source]);
+        maxAmounts[target] = Math.max(maxAmounts[target], maxAmounts[source]);
+      }
+      counts[target] += counts[source];
+      amountSums[target] += amountSums[source];
+      resultSums[target] += resultSums[source];
+    }
+  }
+
+  // Переносит интервал from на место to (to <= from)
+  private void moveBucket(int from, int to) {
+    if (from == to) {
+      return;
+    }
+    bucketStarts[to] = bucketStarts[from];
+    for (long[] cells : new long[][] {counts, amountSums, resultSums, minAmounts, maxAmounts}) {
+      System.arraycopy(cells, from * PAIRS, cells, to * PAIRS, PAIRS);
+    }
+  }
+
+  // Номер первого интервала, который начинается не раньше from
+  private int firstBucketAtOrAfter(long from) {
+    int slot = Arrays.binarySearch(bucketStarts, 0, bucketCount, from);
+    return slot >= 0 ? slot : -slot - 1;
+  }
+
+  private void grow(int buckets) {
+    bucketStarts = Arrays.copyOf(bucketStarts, buckets);
+    counts = Arrays.copyOf(counts, buckets * PAIRS);
+    amountSums = Arrays.copyOf(amountSums, buckets * PAIRS);
+    resultSums = Arrays.copyOf(resultSums, buckets * PAIRS);
+    minAmounts = Arrays.copyOf(minAmounts, buckets * PAIRS);
+    maxAmounts = Arrays.copyOf(maxAmounts, buckets * PAIRS);
+  }
+
+  private void clear() {
+    bucketCount = 0;
+    segmentSequence = 0;
+    logLength = 0;
+    rolledUpBefore = Long.MIN_VALUE;
+    for (long[] cells : new long[][] {counts, amountSums, resultSums, minAmounts, maxAmounts}) {
+      Arrays.fill(cells, 0);
+    }
+  }
+
+  private static void putCells(ByteBuffer buffer, long[] cells, int bucket) {
+    for (int i = bucket * PAIRS, end = i + PAIRS; i < end; i++) {
+      buffer.putLong(cells[i]);
+    }
+  }
+
+  private static void getCells(ByteBuffer buffer, long[] cells, int bucket) {
+    for (int i = bucket * PAIRS, end = i + PAIRS; i < end; i++) {
+      cells[i] = buffer.getLong();
+    }
+  }
+
+  // Загружает контрольную точку; возвращает false, если файла нет или он не подходит
+  private boolean load() throws IOException {
+    if (!Files.exists(checkpointFile)) {
+      return false;
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(checkpointFile));
+    if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != PAIRS
+        || buffer.getLong() != bucketMillis) {
+      return false;
+    }
+    long sequence = buffer.getLong();
+    long length = buffer.getLong();
+    int buckets = buffer.getInt();
+    if (sequence < 0 || length < 0 || buckets < 0 || buffer.remaining() != (long) buckets * BUCKET_SIZE) {
+      return false;
+    }
+    grow(Math.max(16, buckets));
+    for (int i = 0; i < buckets; i++) {
+      bucketStarts[i] = buffer.getLong();
+      getCells(buffer, counts, i);
+      getCells(buffer, amountSums, i);
+      getCells(buffer, resultSums, i);
+      getCells(buffer, minAmounts, i);
+      getCells(buffer, maxAmounts, i);
+    }
+    bucketCount = buckets;
+    segmentSequence = sequence;
+    logLength = length;
+    return true;
+  }
+
+  // Учитывает записи сегментов журнала, которых нет в итогах: хвост сегмента контрольной точки
+  // начиная с учтенной длины и все следующие сегменты целиком, затем сворачивает старые интервалы
+  private void replay(Path log, HistoryFormat format) throws IOException {
+    for (HistorySegments.Segment segment : HistorySegments.list(log)) {
+      if (segment.getSequence() < segmentSequence) {
+        continue;
+      }
+      long from = segment.getSequence() == segmentSequence ? logLength : 0;
+      HistorySegments.scan(segment, format, from, (epochMillis, amount, source, target,
+          resultAmount, rateVersion) -> add(epochMillis, amount, source, target, resultAmount));
+    }
+    rollUp();
+  }
+
+  /* Итоги обменов одной пары валют за период. Суммы доступны точно, в минимальных единицах,
+     и в виде double для вывода.
+   */
+  public static final class Totals {
+
+    private final CurrencyEnum sourceCurrency;
+    private final CurrencyEnum targetCurrency;
+    private final long count;
+    private final long amountSumMinor;
+    private final long resultSumMinor;
+    private final long minAmountMinor;
+    private final long maxAmountMinor;
+
+    Totals(CurrencyEnum sourceCurrency, CurrencyEnum targetCurrency, long count,
+        long amountSumMinor, long resultSumMinor, long minAmountMinor, long maxAmountMinor) {
+      this.sourceCurrency = sourceCurrency;
+      this.targetCurrency = targetCurrency;
+      this.count = count;
+      this.amountSumMinor = amountSumMinor;
+      this.resultSumMinor = resultSumMinor;
+      this.minAmountMinor = minAmountMinor;
+      this.maxAmountMinor = maxAmountMinor;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public long getAmountSumMinor() {
+      return amountSumMinor;
+    }
+
+    public long getResultSumMinor() {
+      return resultSumMinor;
+    }
+
+    public long getMinAmountMinor() {
+      return minAmountMinor;
+    }
+
+    public long getMaxAmountMinor() {
+      return maxAmountMinor;
+    }
+
+    public double getAmountSum() {
+      return MoneyMath.toAmount(amountSumMinor, sourceCurrency);
+    }
+
+    public double getResultSum() {
+      return MoneyMath.toAmount(resultSumMinor, targetCurrency);
+    }
+
+    public double getMinAmount() {
+      return MoneyMath.toAmount(minAmountMinor, sourceCurrency);
+    }
+
+    public double getMaxAmount() {
+      return MoneyMath.toAmount(maxAmountMinor, sourceCurrency);
+    }
+
+    @Override
+    public String toString() {
+      return sourceCurrency.name() + " -> " + targetCurrency.name() + ": обменов " + count
+          + ", сумма " + MoneyMath.toBigDecimal(amountSumMinor, sourceCurrency).toPlainString()
+          + " " + sourceCurrency.name()
+          + ", результат " + MoneyMath.toBigDecimal(resultSumMinor, targetCurrency).toPlainString()
+          + " " + targetCurrency.name()
+          + ", мин " + MoneyMath.toBigDecimal(minAmountMinor, sourceCurrency).toPlainString()
+          + ", макс " + MoneyMath.toBigDecimal(maxAmountMinor, sourceCurrency).toPlainString();
+    }
+  }
+}
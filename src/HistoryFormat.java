@@ -0,0 +1,100 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Locale;
+
+/* Перечисление HistoryFormat описывает форматы хранения истории обменов.
+   TEXT - прежний текстовый формат: одна строка ExchangeRecord.toString() на обмен в файле "history.txt".
+   BINARY - компактный формат с записями фиксированной длины RECORD_SIZE байт в файле "history.bin".
+   Двоичная запись (порядок байт little-endian):
+     смещение 0,  8 байт - дата обмена в миллисекундах от эпохи (long)
+     смещение 8,  8 байт - сумма в исходной валюте (double)
+     смещение 16, 8 байт - результат обмена в целевой валюте (double)
+     смещение 24, 2 байта - ordinal исходной валюты CurrencyEnum (short)
+     смещение 26, 2 байта - ordinal целевой валюты CurrencyEnum (short)
+     смещение 28, 4 байта - версия снимка курсов RateSnapshot (int)
+   Благодаря фиксированной длине запись с номером i начинается со смещения i * RECORD_SIZE,
+   и файл можно читать через FileChannel.map без построения строк (см. BinaryHistoryReader).
+ */
+public enum HistoryFormat {
+  TEXT("history.txt") {
+    @Override
+    void encode(long epochMillis, double amount, CurrencyEnum sourceCurrency,
+        CurrencyEnum targetCurrency, double resultAmount, int rateVersion, ByteBuffer buffer) {
+      RecordTextEncoder.forCurrentThread().encode(epochMillis, amount, sourceCurrency,
+          targetCurrency, resultAmount, rateVersion, buffer);
+      buffer.put((byte) '\n');
+    }
+  },
+  BINARY("history.bin") {
+    @Override
+    void encode(long epochMillis, double amount, CurrencyEnum sourceCurrency,
+        CurrencyEnum targetCurrency, double resultAmount, int rateVersion, ByteBuffer buffer) {
+      ByteOrder order = buffer.order();
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+      buffer.putLong(epochMillis);
+      buffer.putDouble(amount);
+      buffer.putDouble(resultAmount);
+      buffer.putShort((short) sourceCurrency.ordinal());
+      buffer.putShort((short) targetCurrency.ordinal());
+      buffer.putInt(rateVersion);
+      buffer.order(order);
+    }
+  };
+
+  // Длина одной двоичной записи в байтах
+  public static final int RECORD_SIZE = 32;
+  // Смещения полей внутри двоичной записи
+  static final int EPOCH_MILLIS_OFFSET = 0;
+  static final int AMOUNT_OFFSET = 8;
+  static final int RESULT_OFFSET = 16;
+  static final int SOURCE_OFFSET = 24;
+  static final int TARGET_OFFSET = 26;
+  static final int RATE_VERSION_OFFSET = 28;
+  // Максимальная длина одной записи в любом формате; журнал держит в буфере не меньше этого места
+  static final int MAX_ENCODED_SIZE = 1024;
+
+  // Имя файла истории по умолчанию для формата
+  private final String defaultFileName;
+
+  HistoryFormat(String defaultFileName) {
+    this.defaultFileName = defaultFileName;
+  }
+
+  public String getDefaultFileName() {
+    return defaultFileName;
+  }
+
+  // Записывает запись в буфер в данном формате по её полям, не создавая объектов
+  abstract void encode(long epochMillis, double amount, CurrencyEnum sourceCurrency,
+      CurrencyEnum targetCurrency, double resultAmount, int rateVersion, ByteBuffer buffer);
+
+  // Записывает запись в буфер в данном формате
+  void encode(ExchangeRecord exchangeRecord, ByteBuffer buffer) {
+    encode(exchangeRecord.getEpochMillis(), exchangeRecord.getAmount(),
+        exchangeRecord.getSourceCurrency(), exchangeRecord.getTargetCurrency(),
+        exchangeRecord.getResultAmount(), exchangeRecord.getRateVersion(), buffer);
+  }
+
+  // Читает двоичную запись, начинающуюся с позиции offset буфера (порядок байт буфера - little-endian)
+  static ExchangeRecord decodeBinary(ByteBuffer buffer, int offset) {
+    return new ExchangeRecord(buffer.getLong(offset + EPOCH_MILLIS_OFFSET),
+        buffer.getDouble(offset + AMOUNT_OFFSET),
+        CurrencyEnum.byOrdinal(buffer.getShort(offset + SOURCE_OFFSET)),
+        CurrencyEnum.byOrdinal(buffer.getShort(offset + TARGET_OFFSET)),
+        buffer.getDouble(offset + RESULT_OFFSET),
+        buffer.getInt(offset + RATE_VERSION_OFFSET));
+  }
+
+  // Определяет формат по системному свойству history.format (text или binary); по умолчанию TEXT.
+  // Неизвестное значение не прерывает запуск: выводится сообщение и используется TEXT.
+  public static HistoryFormat fromSystemProperty() {
+    String value = System.getProperty("history.format", "text");
+    try {
+      return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      System.out.println("Неверный формат истории history.format: " + value
+          + ". Используется text.");
+      return TEXT;
+    }
+  }
+}
@@ -0,0 +1,548 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneId;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/* Класс HistoryJournal - долгоживущий журнал истории обменов.
+   Вместо открытия и закрытия файла на каждый обмен файл открывается один раз,
+   а записи передаются фоновому потоку-писателю через ограниченный кольцевой буфер.
+   Писатель забирает записи пачками и сбрасывает их на диск одной записью в файловый канал
+   (групповая фиксация) - либо когда набралось batchSize записей, либо когда
+   прошло flushIntervalMillis миллисекунд с предыдущего сброса.
+   Если буфер заполнен, метод append блокирует вызывающий поток, пока писатель
+   не освободит место (обратное давление), поэтому память не растет бесконечно.
+   Кольцевой буфер хранит поля записей в примитивных массивах, а писатель кодирует их
+   в заранее выделенный байтовый буфер, поэтому запись обмена в журнал не создает объектов.
+   Формат записей в файле задается перечислением HistoryFormat (текстовый или двоичный).
+   По мере записи писатель дополняет разреженный индекс по времени HistoryTimeIndex,
+   который позволяет запросам по диапазону дат начинать чтение с нужного места файла,
+   и накопительные итоги по парам валют HistoryAggregates, которые раз в
+   HistoryAggregates.DEFAULT_CHECKPOINT_INTERVAL_MILLIS и при закрытии сохраняются контрольной точкой.
+   Файл журнала ротируется: когда он превышает maxSegmentBytes или записи переходят в следующий период
+   длиной segmentMillis (по местному времени, поэтому суточные сегменты сменяются в местную полночь), писатель закрывает его как сегмент (см. HistorySegments) и начинает новый файл,
+   а закрытый сегмент сжимается GZIP отдельным фоновым потоком, не задерживая запись.
+   Монолитный журнал, который вел прежний журнал без ротации, при открытии делится на сегменты.
+   Задержки добавления и сброса, объем записанных данных и ошибки записи учитываются в ExchangeMetrics.
+ */
+public class HistoryJournal implements AutoCloseable {
+
+  // Значения по умолчанию для журнала history.txt
+  public static final int DEFAULT_CAPACITY = 8192;
+  public static final int DEFAULT_BATCH_SIZE = 256;
+  public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 200;
+  // Размер буфера, в котором писатель собирает пачку записей перед записью в канал
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  // Файл журнала
+  private final Path file;
+  // Формат записей в файле журнала
+  private final HistoryFormat format;
+  // Сколько записей сбрасывать за один раз
+  private final int batchSize;
+  // Максимальное время, которое запись может провести в буфере до сброса на диск
+  private final long flushIntervalMillis;
+  // Размер файла и длина периода, после которых файл закрывается как сегмент
+  private final long maxSegmentBytes;
+  private final long segmentMillis;
+  // Часовой пояс, по местному времени которого отсчитываются периоды сегментов
+  private final ZoneId zone = ZoneId.systemDefault();
+  // Фоновый поток-писатель
+  private final Thread writerThread;
+  // Фоновый поток сжатия закрытых сегментов
+  private final ExecutorService compressor;
+  // Метрики журнала
+  private final ExchangeMetrics metrics;
+  // Накопительные итоги по парам валют; обновляются писателем по мере записи
+  private final HistoryAggregates aggregates;
+
+  // Кольцевой буфер записей: поля записи с порядковым номером n хранятся в ячейке n % capacity
+  private final int capacity;
+  private final long[] epochMillis;
+  private final double[] amounts;
+  private final double[] resultAmounts;
+  private final byte[] sourceOrdinals;
+  private final byte[] targetOrdinals;
+  private final int[] rateVersions;
+
+  // Блокировка и условия ожидания кольцевого буфера
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notFull = lock.newCondition();
+  private final Condition batchReady = lock.newCondition();
+  private final Condition flushed = lock.newCondition();
+  // Количество принятых записей (номер следующей записи), количество записей,
+  // уже сброшенных на диск (номер следующей записи для писателя), и запрос немедленного сброса
+  private long appendedCount;
+  private long flushedCount;
+  private boolean flushRequested;
+  // Флаг закрытия журнала
+  private boolean closed;
+  // Поток-писатель завершился (после закрытия журнала или из-за ошибки записи)
+  private boolean writerStopped;
+
+  // Состояние текущего сегмента; используется только потоком-писателем.
+  // Канал файла и индекс по времени, длина записанной части файла,
+  // номер сегмента, начало следующего периода (Long.MIN_VALUE - период еще не известен)
+  // и диапазон дат его записей (пустой сегмент - first > last)
+  private FileChannel channel;
+  private HistoryTimeIndex index;
+  private long written;
+  private long segmentSequence;
+  private long segmentEndMillis;
+  private long segmentFirstMillis;
+  private long segmentLastMillis;
+
+  public HistoryJournal(Path file) {
+    this(file, HistoryFormat.TEXT);
+  }
+
+  public HistoryJournal(Path file, HistoryFormat format) {
+    this(file, format, new ExchangeMetrics(false));
+  }
+
+  public HistoryJournal(Path file, HistoryFormat format, ExchangeMetrics metrics) {
+    this(file, format, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL_MILLIS, metrics);
+  }
+
+  public HistoryJournal(Path file, HistoryFormat format, int capacity, int batchSize,
+      long flushIntervalMillis, ExchangeMetrics metrics) {
+    this(file, format, capacity, batchSize, flushIntervalMillis,
+        HistorySegments.DEFAULT_MAX_SEGMENT_BYTES, HistorySegments.DEFAULT_SEGMENT_MILLIS, metrics);
+  }
+
+  public HistoryJournal(Path file, HistoryFormat format, int capacity, int batchSize,
+      long flushIntervalMillis, long maxSegmentBytes, long segmentMillis, ExchangeMetrics metrics) {
+    if (capacity <= 0 || batchSize <= 0 || flushIntervalMillis <= 0 || maxSegmentBytes <= 0
+        || segmentMillis <= 0) {
+      throw new IllegalArgumentException("Параметры журнала должны быть положительными.");
+    }
+    this.file = file;
+    this.format = format;
+    this.capacity = capacity;
+    this.epochMillis = new long[capacity];
+    this.amounts = new double[capacity];
+    this.resultAmounts = new double[capacity];
+    this.sourceOrdinals = new byte[capacity];
+    this.targetOrdinals = new byte[capacity];
+    this.rateVersions = new int[capacity];
+    this.batchSize = Math.min(batchSize, capacity);
+    this.flushIntervalMillis = flushIntervalMillis;
+    this.maxSegmentBytes = maxSegmentBytes;
+    this.segmentMillis = segmentMillis;
+    this.metrics = metrics;
+    migrateMonolithicLog();
+    // Хвост обрезается до открытия индекса и восстановления итогов: оба сверяют учтенную длину
+    // с длиной файла и перестраивают часть, которая приходилась на обрезанный хвост
+    repairTornTail();
+    this.aggregates = recoverAggregates(file, format, metrics);
+    this.compressor = Executors.newSingleThreadExecutor(task -> {
+      Thread thread = new Thread(task, "history-segment-compressor");
+      thread.setDaemon(true);
+      return thread;
+    });
+    // Сегменты, которые не успели сжать до остановки программы. Список составляется до запуска
+    // потока записи, чтобы сегменты, закрытые им позже, не попали на сжатие второй раз.
+    try {
+      for (Path sealed : HistorySegments.pendingCompression(file)) {
+        compressor.execute(() -> compressSegment(sealed));
+      }
+    } catch (IOException e) {
+      metrics.recordError(ExchangeMetrics.ErrorCause.HISTORY_WRITE);
+      System.out.println("Ошибка сжатия сегмента истории: " + e.getMessage());
+    }
+    this.writerThread = new Thread(this::runWriter, "history-journal-writer");
+    this.writerThread.setDaemon(true);
+    this.writerThread.start();
+  }
+
+  // Накопительные итоги журнала. Итоги учитывают записи, уже сброшенные на диск,
+  // поэтому перед запросом стоит вызвать flush().
+  public HistoryAggregates getAggregates() {
+    return aggregates;
+  }
+
+  // Добавляет запись в журнал. Если буфер заполнен, ждет освобождения места.
+  public void append(ExchangeRecord exchangeRecord) throws InterruptedException {
+    append(exchangeRecord.getEpochMillis(), exchangeRecord.getAmount(),
+        exchangeRecord.getSourceCurrency(), exchangeRecord.getTargetCurrency(),
+        exchangeRecord.getResultAmount(), exchangeRecord.getRateVersion());
+  }
+
+  // Добавляет запись в журнал по её полям, не создавая объектов. Если буфер заполнен,
+  // ждет освобождения места. Если поток-писатель остановился из-за ошибки записи,
+  // выбрасывается IllegalStateException: запись не принимается, а не теряется молча в буфере.
+  // Суммы, которые нельзя учесть в итогах (NaN, бесконечность, слишком большие), отклоняются
+  // с IllegalArgumentException здесь же: в потоке-писателе такое исключение остановило бы журнал.
+  public void append(long epochMillis, double amount, CurrencyEnum sourceCurrency,
+      CurrencyEnum targetCurrency, double resultAmount, int rateVersion)
+      throws InterruptedException {
+    try {
+      HistoryAggregates.checkAmounts(amount, sourceCurrency, targetCurrency, resultAmount);
+    } catch (IllegalArgumentException e) {
+      metrics.recordError(ExchangeMetrics.ErrorCause.INVALID_AMOUNT);
+      throw e;
+    }
+    long startNanos = metrics.startTimer();
+    lock.lockInterruptibly();
+    try {
+      while (appendedCount - flushedCount == capacity && !closed && !writerStopped) {
+        notFull.await(flushIntervalMillis, TimeUnit.MILLISECONDS);
+      }
+      if (closed) {
+        metrics.recordError(ExchangeMetrics.ErrorCause.JOURNAL_UNAVAILABLE);
+        throw new IllegalStateException("Журнал истории закрыт.");
+      }
+      if (writerStopped) {
+        metrics.recordError(ExchangeMetrics.ErrorCause.JOURNAL_UNAVAILABLE);
+        throw new IllegalStateException("Журнал истории недоступен.");
+      }
+      int slot = (int) (appendedCount % capacity);
+      this.epochMillis[slot] = epochMillis;
+      this.amounts[slot] = amount;
+      this.resultAmounts[slot] = resultAmount;
+      this.sourceOrdinals[slot] = (byte) sourceCurrency.ordinal();
+      this.targetOrdinals[slot] = (byte) targetCurrency.ordinal();
+      this.rateVersions[slot] = rateVersion;
+      appendedCount++;
+      if (appendedCount - flushedCount == batchSize) {
+        batchReady.signal();
+      }
+    } finally {
+      lock.unlock();
+    }
+    metrics.recordAppend(startNanos);
+  }
+
+  // Ждет, пока все записи, добавленные до вызова, будут сброшены на диск.
+  // Используется перед чтением истории, чтобы пользователь увидел свои последние обмены.
+  // Если поток-писатель остановился из-за ошибки записи и часть этих записей не попала на диск,
+  // выбрасывается IllegalStateException.
+  public void flush() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      long target = appendedCount;
+      flushRequested = true;
+      batchReady.signal();
+      while (flushedCount < target && !writerStopped) {
+        flushed.await(flushIntervalMillis, TimeUnit.MILLISECONDS);
+      }
+      if (flushedCount < target) {
+        metrics.recordError(ExchangeMetrics.ErrorCause.JOURNAL_UNAVAILABLE);
+        throw new IllegalStateException("Журнал истории недоступен: "
+            + (target - flushedCount) + " записей не сохранено.");
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // Закрывает журнал: новые записи больше не принимаются, оставшиеся в буфере
+  // записи сбрасываются на диск, после чего поток-писатель завершается
+  // и журнал дожидается сжатия уже закрытых сегментов.
+  // Поток-писатель не прерывается через interrupt(), так как прерывание закрыло бы
+  // файловый канал посреди записи; вместо этого он будится через условие batchReady.
+  @Override
+  public void close() {
+    lock.lock();
+    try {
+      closed = true;
+      batchReady.signal();
+    } finally {
+      lock.unlock();
+    }
+    try {
+      writerThread.join();
+      compressor.shutdown();
+      compressor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // Основной цикл потока-писателя
+  private void runWriter() {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    try {
+      segmentSequence = HistorySegments.activeSequence(file);
+      openSegment();
+      long lastCheckpointMillis = System.currentTimeMillis();
+      while (true) {
+        long from;
+        long to;
+        boolean finished;
+        lock.lock();
+        try {
+          // Ждем полной пачки, запроса сброса, закрытия или истечения интервала сброса
+          long remaining = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+          while (appendedCount - flushedCount < batchSize && !flushRequested && !closed
+              && remaining > 0) {
+            remaining = batchReady.awaitNanos(remaining);
+          }
+          flushRequested = false;
+          from = flushedCount;
+          to = appendedCount;
+          finished = closed;
+        } finally {
+          lock.unlock();
+        }
+        long batchStartNanos = metrics.startFlushTimer();
+        long batchBytes = 0;
+        // Ячейки [from, to) не перезаписываются, пока flushedCount не сдвинут, поэтому
+        // их можно кодировать без блокировки, не задерживая потоки, которые добавляют записи.
+        for (long sequence = from; sequence < to; sequence++) {
+          int slot = (int) (sequence % capacity);
+          if (shouldRotate(epochMillis[slot], buffer)) {
+            batchBytes += writeBuffer(buffer);
+            rotate();
+          }
+          if (buffer.remaining() < HistoryFormat.MAX_ENCODED_SIZE) {
+            batchBytes += writeBuffer(buffer);
+          }
+          trackSegmentRange(epochMillis[slot]);
+          index.add(epochMillis[slot], written + buffer.position());
+          aggregates.add(epochMillis[slot], amounts[slot],
+              CurrencyEnum.byOrdinal(sourceOrdinals[slot]),
+              CurrencyEnum.byOrdinal(targetOrdinals[slot]), resultAmounts[slot]);
+          format.encode(epochMillis[slot], amounts[slot],
+              CurrencyEnum.byOrdinal(sourceOrdinals[slot]),
+              CurrencyEnum.byOrdinal(targetOrdinals[slot]), resultAmounts[slot],
+              rateVersions[slot], buffer);
+        }
+        if (to > from) {
+          batchBytes += writeBuffer(buffer);
+          metrics.recordFlush(batchStartNanos, to - from, batchBytes);
+          aggregates.advance(written);
+        }
+        // Контрольная точка итогов: периодически и при закрытии журнала
+        long now = System.currentTimeMillis();
+        if (finished
+            || now - lastCheckpointMillis >= HistoryAggregates.DEFAULT_CHECKPOINT_INTERVAL_MILLIS) {
+          checkpointAggregates();
+          lastCheckpointMillis = now;
+        }
+        lock.lock();
+        try {
+          flushedCount = to;
+          notFull.signalAll();
+          flushed.signalAll();
+          if (finished && flushedCount == appendedCount) {
+            return;
+          }
+        } finally {
+          lock.unlock();
+        }
+      }
+    } catch (IOException e) {
+      metrics.recordError(ExchangeMetrics.ErrorCause.HISTORY_WRITE);
+      System.out.println("Ошибка записи в файл: " + e.getMessage());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      closeSegment();
+      lock.lock();
+      try {
+        writerStopped = true;
+        notFull.signalAll();
+        flushed.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  // Восстанавливает итоги журнала из контрольной точки и хвоста журнала.
+  // Если это не удалось, итоги начинаются с нуля и не сохраняются, чтобы не записать неполную контрольную точку.
+  private static HistoryAggregates recoverAggregates(Path file, HistoryFormat format,
+      ExchangeMetrics metrics) {
+    try {
+      return HistoryAggregates.recover(file, format, HistoryAggregates.DEFAULT_BUCKET_MILLIS);
+    } catch (IOException | RuntimeException e) {
+      metrics.recordError(ExchangeMetrics.ErrorCause.HISTORY_READ);
+      System.out.println("Ошибка чтения итогов истории: " + e.getMessage());
+      return HistoryAggregates.empty(HistoryAggregates.DEFAULT_BUCKET_MILLIS);
+    }
+  }
+
+  // Сохраняет контрольную точку итогов. Ошибка сохранения не останавливает журнал:
+  // при следующем запуске итоги будут восстановлены по предыдущей контрольной точке и хвосту журнала.
+  private void checkpointAggregates() {
+    try {
+      aggregates.checkpoint();
+    } catch (IOException e) {
+      metrics.recordError(ExchangeMetrics.ErrorCause.HISTORY_WRITE);
+      System.out.println("Ошибка сохранения итогов истории: " + e.getMessage());
+    }
+  }
+
+  // Открывает активный файл журнала и его индекс. Период и диапазон дат уже записанной части файла
+  // берутся из индекса: с точностью до интервала индекса, чего достаточно для отбора сегментов запросом.
+  private void openSegment() throws IOException {
+    channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.APPEND);
+    index = HistoryTimeIndex.open(file, format, HistoryTimeIndex.DEFAULT_BUCKET_MILLIS);
+    // Длина уже записанной части файла: смещение следующей записи равно written + buffer.position()
+    written = channel.size();
+    segmentFirstMillis = Long.MAX_VALUE;
+    segmentLastMillis = Long.MIN_VALUE;
+    segmentEndMillis = Long.MIN_VALUE;
+    if (index.size() > 0) {
+      segmentFirstMillis = index.bucketAt(0);
+      segmentLastMillis = index.bucketAt(index.size() - 1) + index.getBucketMillis() - 1;
+      segmentEndMillis = HistorySegments.periodEnd(segmentFirstMillis, segmentMillis, zone);
+    } else if (written > 0) {
+      // В файле есть данные, но ни одна запись не разобрана: диапазон дат неизвестен
+      segmentFirstMillis = Long.MIN_VALUE;
+      segmentLastMillis = Long.MAX_VALUE;
+    }
+  }
+
+  // Нужно ли закрыть текущий сегмент перед записью с датой epochMillis: файл достиг предельного размера
+  // или запись относится к более позднему периоду. Пустой сегмент не закрывается.
+  private boolean shouldRotate(long epochMillis, ByteBuffer buffer) {
+    long size = written + buffer.position();
+    return size > 0 && (size >= maxSegmentBytes || (segmentEndMillis != Long.MIN_VALUE
+        && epochMillis >= segmentEndMillis));
+  }
+
+  private void trackSegmentRange(long epochMillis) {
+    if (segmentEndMillis == Long.MIN_VALUE) {
+      segmentEndMillis = HistorySegments.periodEnd(epochMillis, segmentMillis, zone);
+    }
+    segmentFirstMillis = Math.min(segmentFirstMillis, epochMillis);
+    segmentLastMillis = Math.max(segmentLastMillis, epochMillis);
+  }
+
+  // Закрывает текущий сегмент: файл переименовывается в закрытый сегмент и передается на сжатие,
+  // итоги переходят к новому сегменту, а запись продолжается в новый пустой файл журнала
+  private void rotate() throws IOException {
+    closeSegment();
+    Path sealed = HistorySegments.sealedFileFor(file, segmentSequence, segmentFirstMillis,
+        segmentLastMillis);
+    HistorySegments.moveAtomically(file, sealed);
+    // Индекс по времени закрытого файла остается при нем: по нему запросы читают сегмент
+    // до сжатия, а сжатие строит индекс членов GZIP
+    HistorySegments.moveAtomically(HistoryTimeIndex.indexFileFor(file),
+        HistoryTimeIndex.indexFileFor(sealed));
+    compressor.execute(() -> compressSegment(sealed));
+    segmentSequence++;
+    aggregates.startSegment(segmentSequence);
+    openSegment();
+  }
+
+  private void compressSegment(Path sealed) {
+    try {
+      HistorySegments.compress(sealed);
+    } catch (IOException e) {
+      metrics.recordError(ExchangeMetrics.ErrorCause.HISTORY_WRITE);
+      System.out.println("Ошибка сжатия сегмента истории: " + e.getMessage());
+    }
+  }
+
+  // Закрывает канал и индекс текущего сегмента
+  private void closeSegment() {
+    try {
+      if (index != null) {
+        index.close();
+      }
+      if (channel != null) {
+        channel.close();
+      }
+    } catch (IOException e) {
+      metrics.recordError(ExchangeMetrics.ErrorCause.HISTORY_WRITE);
+      System.out.println("Ошибка записи в файл: " + e.getMessage());
+    }
+    index = null;
+    channel = null;
+  }
+
+  // Делит монолитный журнал на сегменты (см. HistorySegments.migrate) до начала записи
+  private void migrateMonolithicLog() {
+    try {
+      if (HistorySegments.migrate(file, format, maxSegmentBytes, segmentMillis)) {
+        System.out.println("Журнал истории разделен на сегменты.");
+      }
+    } catch (IOException e) {
+      metrics.recordError(ExchangeMetrics.ErrorCause.HISTORY_WRITE);
+      System.out.println("Ошибка разделения журнала истории на сегменты: " + e.getMessage());
+    }
+  }
+
+  // Обрезает недописанную последнюю запись активного файла (см. truncateTornTail)
+  private void repairTornTail() {
+    try {
+      long dropped = truncateTornTail(file, format);
+      if (dropped > 0) {
+        System.out.println("Из журнала истории удалена недописанная запись (" + dropped + " байт).");
+      }
+    } catch (IOException e) {
+      metrics.recordError(ExchangeMetrics.ErrorCause.HISTORY_WRITE);
+      System.out.println("Ошибка записи в файл: " + e.getMessage());
+    }
+  }
+
+  // Обрезает файл журнала до последней целой записи: после сбоя или нехватки места посреди записи
+  // в конце файла может остаться ее часть. Двоичный файл обрезается до длины, кратной размеру записи,
+  // иначе все следующие записи читались бы со сдвигом; текстовый - до последнего перевода строки,
+  // иначе следующая запись склеилась бы с обрывком строки. Возвращает количество удаленных байт.
+  static long truncateTornTail(Path file, HistoryFormat format) throws IOException {
+    if (!Files.exists(file)) {
+      return 0;
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+        StandardOpenOption.WRITE)) {
+      long size = channel.size();
+      long complete = format == HistoryFormat.BINARY
+          ? size - size % HistoryFormat.RECORD_SIZE
+          : afterLastNewline(channel, size);
+      if (complete == size) {
+        return 0;
+      }
+      channel.truncate(complete);
+      channel.force(true);
+      return size - complete;
+    }
+  }
+
+  // Длина текстового файла до последнего перевода строки включительно (0, если его нет)
+  private static long afterLastNewline(FileChannel channel, long size) throws IOException {
+    ByteBuffer chunk = ByteBuffer.allocate(BUFFER_SIZE);
+    long end = size;
+    while (end > 0) {
+      long start = Math.max(0, end - chunk.capacity());
+      chunk.clear().limit((int) (end - start));
+      while (chunk.hasRemaining()) {
+        if (channel.read(chunk, start + chunk.position()) < 0) {
+          break;
+        }
+      }
+      for (int i = chunk.position() - 1; i >= 0; i--) {
+        if (chunk.get(i) == '\n') {
+          return start + i + 1;
+        }
+      }
+      end = start;
+    }
+    return 0;
+  }
+
+  // Записывает накопленное содержимое буфера в канал файла, очищает буфер и сохраняет
+  // записи индекса, которые теперь указывают на записанную часть файла.
+  // Возвращает количество записанных байт.
+  private long writeBuffer(ByteBuffer buffer) throws IOException {
+    long start = written;
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      written += channel.write(buffer);
+    }
+    buffer.clear();
+    index.sync(written);
+    return written - start;
+  }
+}
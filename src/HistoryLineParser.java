@@ -0,0 +1,71 @@
+import java.text.DecimalFormat;
+import java.text.ParseException;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/* Класс HistoryLineParser разбирает строки текстового журнала "history.txt"
+   обратно в объекты ExchangeRecord. Строка имеет вид, который формирует ExchangeRecord.toString():
+     Дата: <Date.toString()>, Сумма: <amount> <SRC> -> <result> <описание целевой валюты>, Версия курсов: <N>
+   Строки из старых журналов без версии курсов тоже поддерживаются (версия считается равной 0).
+   Объект не потокобезопасен (внутри SimpleDateFormat и DecimalFormat),
+   поэтому каждому потоку нужен свой экземпляр.
+ */
+public class HistoryLineParser {
+
+  private static final String DATE_PREFIX = "Дата: ";
+  private static final String AMOUNT_PREFIX = ", Сумма: ";
+  private static final String ARROW = " -> ";
+  private static final String VERSION_PREFIX = ", Версия курсов: ";
+
+  // Формат Date.toString(): "EEE MMM dd HH:mm:ss zzz yyyy" с английскими названиями дней и месяцев
+  private final SimpleDateFormat dateFormat =
+      new SimpleDateFormat("EEE MMM dd HH:mm:ss zzz yyyy", Locale.US);
+  // Тот же формат, которым ExchangeRecord выводит результат обмена
+  private final DecimalFormat decimalFormat = new DecimalFormat("#.##");
+
+  // Разбирает строку журнала. Если строка не соответствует формату,
+  // выбрасывается IllegalArgumentException с описанием ошибки.
+  public ExchangeRecord parse(String line) {
+    try {
+      int amountStart = line.indexOf(AMOUNT_PREFIX);
+      int arrow = line.indexOf(ARROW, amountStart);
+      if (!line.startsWith(DATE_PREFIX) || amountStart < 0 || arrow < 0) {
+        throw new IllegalArgumentException("Неверный формат строки истории: " + line);
+      }
+      Date date = dateFormat.parse(line.substring(DATE_PREFIX.length(), amountStart));
+
+      // Слева от стрелки: "<amount> <SRC>"
+      String source = line.substring(amountStart + AMOUNT_PREFIX.length(), arrow);
+      int sourceSpace = source.lastIndexOf(' ');
+      double amount = Double.parseDouble(source.substring(0, sourceSpace));
+      CurrencyEnum sourceCurrency =
+          ExchangeManager.getCurrencyByAbbreviation(source.substring(sourceSpace + 1));
+
+      // Справа от стрелки: "<result> <описание валюты>" (описание может содержать пробелы)
+      // и необязательная версия курсов
+      String target = line.substring(arrow + ARROW.length());
+      int rateVersion = 0;
+      int versionStart = target.lastIndexOf(VERSION_PREFIX);
+      if (versionStart >= 0) {
+        rateVersion = Integer.parseInt(
+            target.substring(versionStart + VERSION_PREFIX.length()).trim());
+        target = target.substring(0, versionStart);
+      }
+      int targetSpace = target.indexOf(' ');
+      ParsePosition position = new ParsePosition(0);
+      Number result = decimalFormat.parse(target.substring(0, targetSpace), position);
+      if (result == null || position.getIndex() != targetSpace) {
+        throw new IllegalArgumentException("Неверный результат обмена в строке истории: " + line);
+      }
+      CurrencyEnum targetCurrency =
+          ExchangeManager.getCurrencyByAbbreviation(target.substring(targetSpace + 1).trim());
+
+      return new ExchangeRecord(date.getTime(), amount, sourceCurrency, targetCurrency, result.doubleValue(),
+          rateVersion);
+    } catch (ParseException | NumberFormatException | StringIndexOutOfBoundsException e) {
+      throw new IllegalArgumentException("Неверный формат строки истории: " + line, e);
+    }
+  }
+}
@@ -0,0 +1,88 @@
+import java.util.Date;
+
+/* Класс HistoryQuery описывает условия отбора записей истории обменов:
+   диапазон дат, исходную и целевую валюту и диапазон суммы.
+   Объект неизменяем: каждый метод возвращает новый запрос с добавленным условием, например
+     HistoryQuery.all().source(CurrencyEnum.EUR).target(CurrencyEnum.PLN).from(start).to(end)
+   Незаданное условие (null) не ограничивает выборку.
+ */
+public final class HistoryQuery {
+
+  private static final HistoryQuery ALL = new HistoryQuery(Long.MIN_VALUE, Long.MAX_VALUE,
+      null, null, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+
+  // Диапазон дат в миллисекундах от эпохи, обе границы включительно
+  private final long fromMillis;
+  private final long toMillis;
+  // Исходная и целевая валюта; null - любая
+  private final CurrencyEnum sourceCurrency;
+  private final CurrencyEnum targetCurrency;
+  // Диапазон суммы в исходной валюте, обе границы включительно
+  private final double minAmount;
+  private final double maxAmount;
+
+  private HistoryQuery(long fromMillis, long toMillis, CurrencyEnum sourceCurrency,
+      CurrencyEnum targetCurrency, double minAmount, double maxAmount) {
+    this.fromMillis = fromMillis;
+    this.toMillis = toMillis;
+    this.sourceCurrency = sourceCurrency;
+    this.targetCurrency = targetCurrency;
+    this.minAmount = minAmount;
+    this.maxAmount = maxAmount;
+  }
+
+  // Запрос без условий - вся история
+  public static HistoryQuery all() {
+    return ALL;
+  }
+
+  public HistoryQuery from(Date from) {
+    return new HistoryQuery(from.getTime(), toMillis, sourceCurrency, targetCurrency,
+        minAmount, maxAmount);
+  }
+
+  public HistoryQuery to(Date to) {
+    return new HistoryQuery(fromMillis, to.getTime(), sourceCurrency, targetCurrency,
+        minAmount, maxAmount);
+  }
+
+  public HistoryQuery source(CurrencyEnum currency) {
+    return new HistoryQuery(fromMillis, toMillis, currency, targetCurrency, minAmount, maxAmount);
+  }
+
+  public HistoryQuery target(CurrencyEnum currency) {
+    return new HistoryQuery(fromMillis, toMillis, sourceCurrency, currency, minAmount, maxAmount);
+  }
+
+  public HistoryQuery minAmount(double amount) {
+    return new HistoryQuery(fromMillis, toMillis, sourceCurrency, targetCurrency, amount,
+        maxAmount);
+  }
+
+  public HistoryQuery maxAmount(double amount) {
+    return new HistoryQuery(fromMillis, toMillis, sourceCurrency, targetCurrency, minAmount,
+        amount);
+  }
+
+  public long getFromMillis() {
+    return fromMillis;
+  }
+
+  public long getToMillis() {
+    return toMillis;
+  }
+
+  // Проверка записи по её полям; не требует создания объекта ExchangeRecord
+  public boolean matches(long epochMillis, double amount, CurrencyEnum source,
+      CurrencyEnum target) {
+    return epochMillis >= fromMillis && epochMillis <= toMillis
+        && (sourceCurrency == null || sourceCurrency == source)
+        && (targetCurrency == null || targetCurrency == target)
+        && amount >= minAmount && amount <= maxAmount;
+  }
+
+  public boolean matches(ExchangeRecord exchangeRecord) {
+    return matches(exchangeRecord.getEpochMillis(), exchangeRecord.getAmount(),
+        exchangeRecord.getSourceCurrency(), exchangeRecord.getTargetCurrency());
+  }
+}
@@ -0,0 +1,600 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/* Класс HistorySegments - сегменты журнала истории.
+   Журнал HistoryJournal пишет в активный файл (history.txt), а когда файл превышает заданный размер
+   или записи переходят в следующий период (по умолчанию - сутки по местному времени, в котором история
+   показывается пользователю; см. periodEnd), файл закрывается и переименовывается
+   в закрытый сегмент "<имя журнала>.<номер>.<первая дата>_<последняя дата>", где даты - миллисекунды
+   от эпохи. Закрытые сегменты сжимаются GZIP в фоне ("... .gz"), поэтому место на диске
+   растет медленнее, а запросы по датам пропускают сегменты, которые не пересекаются с диапазоном,
+   не открывая их. Номер активного сегмента на единицу больше номера последнего закрытого.
+   Индекс по времени активного файла при закрытии переходит к сегменту. Сжатый сегмент состоит
+   из нескольких членов GZIP (примерно по MEMBER_SIZE несжатых байт), и его индекс "... .gz.idx"
+   хранит смещения начал членов, поэтому запрос по датам распаковывает сегмент не с начала,
+   а с нужного члена.
+   Сжатие и перенос выполняются через временные файлы и атомарное переименование:
+   сбой посреди операции оставляет прежние целые файлы, а незавершенная работа доделывается при запуске.
+ */
+public final class HistorySegments {
+
+  // Размер активного файла, после которого он закрывается, и длина периода сегмента по умолчанию
+  public static final long DEFAULT_MAX_SEGMENT_BYTES = 64L * 1024 * 1024;
+  public static final long DEFAULT_SEGMENT_MILLIS = 24L * 60 * 60 * 1000;
+
+  private static final String COMPRESSED_SUFFIX = ".gz";
+  private static final String TEMPORARY_SUFFIX = ".tmp";
+  // Временные файлы переноса монолитного журнала и отметка о том, что все они записаны
+  private static final String MIGRATION_SUFFIX = ".migrating";
+  private static final String MIGRATION_MARKER_SUFFIX = ".migration";
+  // Размер буфера чтения; кратен длине двоичной записи
+  private static final int BUFFER_SIZE = 64 * 1024;
+  // Сколько несжатых байт (не меньше) входит в один член GZIP сжатого сегмента
+  private static final long MEMBER_SIZE = 1024 * 1024;
+
+  private HistorySegments() {
+  }
+
+  /* Сегмент журнала: файл, номер и диапазон дат записей. Даты закрытого сегмента берутся
+     из имени файла; у активного сегмента диапазон не ограничен.
+   */
+  public static final class Segment {
+
+    private final Path file;
+    private final long sequence;
+    private final long firstMillis;
+    private final long lastMillis;
+    private final boolean compressed;
+    private final boolean active;
+
+    Segment(Path file, long sequence, long firstMillis, long lastMillis, boolean compressed,
+        boolean active) {
+      this.file = file;
+      this.sequence = sequence;
+      this.firstMillis = firstMillis;
+      this.lastMillis = lastMillis;
+      this.compressed = compressed;
+      this.active = active;
+    }
+
+    public Path getFile() {
+      return file;
+    }
+
+    public long getSequence() {
+      return sequence;
+    }
+
+    public boolean isCompressed() {
+      return compressed;
+    }
+
+    public boolean isActive() {
+      return active;
+    }
+
+    // Может ли сегмент содержать записи с датами [fromMillis, toMillis].
+    // Запас slack учитывает записи, попавшие в журнал с опозданием относительно своей даты.
+    public boolean overlaps(long fromMillis, long toMillis, long slack) {
+      return active || (firstMillis <= saturatedAdd(toMillis, slack)
+          && lastMillis >= saturatedAdd(fromMillis, -slack));
+    }
+  }
+
+  // Имя закрытого (еще не сжатого) сегмента
+  public static Path sealedFileFor(Path log, long sequence, long firstMillis, long lastMillis) {
+    return log.resolveSibling(String.format("%s.%06d.%d_%d", log.getFileName(), sequence,
+        firstMillis, lastMillis));
+  }
+
+  // Начало периода сегмента, следующего за периодом даты epochMillis. Периоды длиной segmentMillis
+  // отсчитываются по местному времени часового пояса zone, поэтому суточные сегменты сменяются
+  // в местную полночь; при переходе на летнее время и обратно сутки длятся 23 или 25 часов.
+  // У дат на краях диапазона long периоды отсчитываются по UTC.
+  public static long periodEnd(long epochMillis, long segmentMillis, ZoneId zone) {
+    if (epochMillis < Long.MIN_VALUE / 2 || epochMillis > Long.MAX_VALUE / 2
+        || segmentMillis > Long.MAX_VALUE / 4) {
+      long next = Math.floorDiv(epochMillis, segmentMillis) + 1;
+      return next > Long.MAX_VALUE / segmentMillis ? Long.MAX_VALUE : next * segmentMillis;
+    }
+    long offsetMillis = zone.getRules().getOffset(Instant.ofEpochMilli(epochMillis))
+        .getTotalSeconds() * 1000L;
+    long localEnd = (Math.floorDiv(epochMillis + offsetMillis, segmentMillis) + 1) * segmentMillis;
+    LocalDateTime end = LocalDateTime.ofEpochSecond(Math.floorDiv(localEnd, 1000),
+        Math.floorMod(localEnd, 1000) * 1_000_000, ZoneOffset.UTC);
+    return end.atZone(zone).toInstant().toEpochMilli();
+  }
+
+  // Закрытые сегменты журнала в порядке номеров и за ними активный файл (если он есть).
+  // Обход каталога не атомарен, поэтому список составляется заново, если журнал ротировался,
+  // пока он составлялся (номер активного сегмента изменился), или в номерах закрытых сегментов
+  // есть пропуск: сегмент, который сжимался во время обхода, мог не попасть в список ни под одним
+  // именем. Пропуск, который повторился в двух списках подряд (сегменты удалены вручную), остается.
+  // Номер активного сегмента в списке позволяет читателю проверить, что открытый им активный файл
+  // - тот же сегмент (см. ExchangeHistory).
+  public static List<Segment> list(Path log) throws IOException {
+    Set<Long> previous = null;
+    while (true) {
+      // Если сегмент уже сжат, но несжатый файл еще не удален, используется сжатый
+      TreeMap<Long, Segment> sealed = new TreeMap<>();
+      for (Segment segment : sealedSegments(log)) {
+        sealed.merge(segment.sequence, segment,
+            (first, second) -> first.compressed ? first : second);
+      }
+      long sequence = sealed.isEmpty() ? 1 : sealed.lastKey() + 1;
+      boolean activeExists = Files.exists(log);
+      // Номера закрытых сегментов идут подряд с единицы
+      boolean complete = sequence - 1 == sealed.size();
+      if (activeSequence(log) != sequence
+          || (!complete && !sealed.keySet().equals(previous))) {
+        previous = new HashSet<>(sealed.keySet());
+        continue;
+      }
+      List<Segment> segments = new ArrayList<>(sealed.values());
+      if (activeExists) {
+        segments.add(new Segment(log, sequence, Long.MIN_VALUE, Long.MAX_VALUE, false, true));
+      }
+      return segments;
+    }
+  }
+
+  // Номер активного сегмента: следующий за последним закрытым
+  public static long activeSequence(Path log) throws IOException {
+    long last = 0;
+    for (Segment segment : sealedSegments(log)) {
+      last = Math.max(last, segment.sequence);
+    }
+    return last + 1;
+  }
+
+  // Сжимает закрытый сегмент: GZIP и его индекс пишутся во временные файлы, которые затем атомарно
+  // получают окончательные имена (сначала индекс), после чего несжатый сегмент и его индекс удаляются
+  public static void compress(Path sealed) throws IOException {
+    Path target = sealed.resolveSibling(sealed.getFileName() + COMPRESSED_SUFFIX);
+    Path temporary = target.resolveSibling(target.getFileName() + TEMPORARY_SUFFIX);
+    Path targetIndex = HistoryTimeIndex.indexFileFor(target);
+    Path temporaryIndex = targetIndex.resolveSibling(targetIndex.getFileName() + TEMPORARY_SUFFIX);
+    HistoryTimeIndex index = HistoryTimeIndex.read(sealed);
+    writeCompressed(sealed, 0, Files.size(sealed), temporary, index, temporaryIndex);
+    if (index != null) {
+      moveAtomically(temporaryIndex, targetIndex);
+    }
+    moveAtomically(temporary, target);
+    Files.delete(sealed);
+    Files.deleteIfExists(HistoryTimeIndex.indexFileFor(sealed));
+  }
+
+  // Закрытые сегменты, которые остались несжатыми (например, после сбоя). Несжатая копия сегмента,
+  // для которого сжатый файл уже готов (сбой между переименованием и удалением), удаляется сразу.
+  public static List<Path> pendingCompression(Path log) throws IOException {
+    List<Segment> segments = sealedSegments(log);
+    List<Path> pending = new ArrayList<>();
+    for (Segment segment : segments) {
+      if (segment.compressed) {
+        continue;
+      }
+      boolean alreadyCompressed = segments.stream().anyMatch(
+          other -> other.compressed && other.sequence == segment.sequence);
+      if (alreadyCompressed) {
+        Files.deleteIfExists(segment.file);
+        Files.deleteIfExists(HistoryTimeIndex.indexFileFor(segment.file));
+      } else {
+        pending.add(segment.file);
+      }
+    }
+    return pending;
+  }
+
+  // Ленивый поток записей сегмента в порядке записи. Если fromMillis не Long.MIN_VALUE, чтение
+  // начинается с места, найденного по индексу сегмента, так что в потоке есть все записи с датой
+  // не раньше fromMillis (и, возможно, несколько более ранних). Строки, которые не удается разобрать,
+  // пропускаются. Поток держит файл открытым, поэтому его нужно закрывать.
+  public static Stream<ExchangeRecord> records(Segment segment, HistoryFormat format,
+      long fromMillis) throws IOException {
+    InputStream input = open(segment, fromMillis);
+    if (format == HistoryFormat.BINARY) {
+      byte[] chunk = new byte[BUFFER_SIZE];
+      ByteBuffer buffer = ByteBuffer.wrap(chunk).order(ByteOrder.LITTLE_ENDIAN);
+      return Stream.generate(() -> readChunk(input, chunk, buffer))
+          .takeWhile(records -> !records.isEmpty())
+          .flatMap(List::stream)
+          .onClose(() -> closeQuietly(input));
+    }
+    HistoryLineParser parser = new HistoryLineParser();
+    BufferedReader reader = new BufferedReader(
+        new InputStreamReader(input, StandardCharsets.UTF_8), BUFFER_SIZE);
+    return reader.lines()
+        .map(line -> ExchangeHistory.parseOrNull(parser, line))
+        .filter(Objects::nonNull)
+        .onClose(() -> closeQuietly(reader));
+  }
+
+  // Обходит записи сегмента начиная со смещения from (граница записи; для сжатого сегмента -
+  // смещение в несжатых данных) и передает их поля посетителю
+  public static void scan(Segment segment, HistoryFormat format, long from,
+      BinaryHistoryReader.RecordVisitor visitor) throws IOException {
+    try (InputStream input = open(segment, Long.MIN_VALUE)) {
+      input.skipNBytes(from);
+      scan(input, format, Long.MAX_VALUE, visitor);
+    }
+  }
+
+  // Обходит записи сегмента за время от fromMillis: чтение начинается с места, найденного
+  // по индексу сегмента (как в records), и прекращается на первой записи позже stopMillis.
+  // Посетитель получает все записи с датой от fromMillis до stopMillis и, возможно, несколько
+  // более ранних, поэтому отбор по дате остается за ним.
+  public static void scanRange(Segment segment, HistoryFormat format, long fromMillis,
+      long stopMillis, BinaryHistoryReader.RecordVisitor visitor) throws IOException {
+    try (InputStream input = open(segment, fromMillis)) {
+      scan(input, format, stopMillis, visitor);
+    }
+  }
+
+  // Передает посетителю поля записей потока до первой записи позже stopMillis
+  private static void scan(InputStream input, HistoryFormat format, long stopMillis,
+      BinaryHistoryReader.RecordVisitor visitor) throws IOException {
+    if (format == HistoryFormat.BINARY) {
+      byte[] chunk = new byte[BUFFER_SIZE];
+      ByteBuffer buffer = ByteBuffer.wrap(chunk).order(ByteOrder.LITTLE_ENDIAN);
+      int length;
+      // Недописанный хвост короче записи игнорируется
+      while ((length = input.readNBytes(chunk, 0, chunk.length)) >= HistoryFormat.RECORD_SIZE) {
+        for (int offset = 0; offset + HistoryFormat.RECORD_SIZE <= length;
+            offset += HistoryFormat.RECORD_SIZE) {
+          long epochMillis = buffer.getLong(offset + HistoryFormat.EPOCH_MILLIS_OFFSET);
+          if (epochMillis > stopMillis) {
+            return;
+          }
+          visitor.visit(epochMillis, buffer.getDouble(offset + HistoryFormat.AMOUNT_OFFSET),
+              CurrencyEnum.byOrdinal(buffer.getShort(offset + HistoryFormat.SOURCE_OFFSET)),
+              CurrencyEnum.byOrdinal(buffer.getShort(offset + HistoryFormat.TARGET_OFFSET)),
+              buffer.getDouble(offset + HistoryFormat.RESULT_OFFSET),
+              buffer.getInt(offset + HistoryFormat.RATE_VERSION_OFFSET));
+        }
+      }
+      return;
+    }
+    HistoryLineParser parser = new HistoryLineParser();
+    BufferedReader reader = new BufferedReader(
+        new InputStreamReader(input, StandardCharsets.UTF_8), BUFFER_SIZE);
+    String line;
+    while ((line = reader.readLine()) != null) {
+      ExchangeRecord exchangeRecord = ExchangeHistory.parseOrNull(parser, line);
+      if (exchangeRecord == null) {
+        continue;
+      }
+      if (exchangeRecord.getEpochMillis() > stopMillis) {
+        return;
+      }
+      visitor.visit(exchangeRecord.getEpochMillis(), exchangeRecord.getAmount(),
+          exchangeRecord.getSourceCurrency(), exchangeRecord.getTargetCurrency(),
+          exchangeRecord.getResultAmount(), exchangeRecord.getRateVersion());
+    }
+  }
+
+  // Разделяет монолитный журнал (например, history.txt, который вел прежний журнал без ротации)
+  // на сжатые закрытые сегменты по тем же правилам, что и ротация: по размеру и по периоду
+  // (периоды отсчитываются по местному времени, см. periodEnd).
+  // Границы сегментов берутся из индекса по времени HistoryTimeIndex, поэтому записи не разбираются
+  // повторно. Последний неполный сегмент остается активным файлом. Возвращает true, если журнал разделен.
+  // Сначала все новые файлы пишутся под временными именами, затем создается отметка переноса,
+  // и только после нее файлы получают окончательные имена. Если перенос прервался до отметки,
+  // временные файлы удаляются и журнал остается прежним; если после - перенос доделывается.
+  public static boolean migrate(Path log, HistoryFormat format, long maxSegmentBytes,
+      long segmentMillis) throws IOException {
+    Path marker = log.resolveSibling(log.getFileName() + MIGRATION_MARKER_SUFFIX);
+    if (Files.exists(marker)) {
+      completeMigration(log, marker);
+      return true;
+    }
+    deleteMigrationFiles(log);
+    if (!Files.exists(log) || Files.size(log) == 0) {
+      return false;
+    }
+    long logLength = Files.size(log);
+    // Границы сегментов: смещения начала и даты первой и последней записи каждого сегмента
+    List<long[]> cuts = new ArrayList<>();
+    try (HistoryTimeIndex index = HistoryTimeIndex.open(log, format,
+        HistoryTimeIndex.DEFAULT_BUCKET_MILLIS)) {
+      if (index.size() == 0) {
+        return false;
+      }
+      ZoneId zone = ZoneId.systemDefault();
+      long start = 0;
+      long first = index.bucketAt(0);
+      long end = periodEnd(first, segmentMillis, zone);
+      for (int i = 1; i < index.size(); i++) {
+        long offset = index.offsetAt(i);
+        long bucket = index.bucketAt(i);
+        if (offset - start >= maxSegmentBytes || bucket >= end) {
+          cuts.add(new long[] {start, offset, first,
+              index.bucketAt(i - 1) + index.getBucketMillis() - 1});
+          start = offset;
+          first = bucket;
+          end = periodEnd(first, segmentMillis, zone);
+        }
+      }
+      if (cuts.isEmpty()) {
+        return false;
+      }
+      cuts.add(new long[] {start, logLength, first, Long.MAX_VALUE});
+      long sequence = activeSequence(log);
+      for (int i = 0; i < cuts.size() - 1; i++) {
+        long[] cut = cuts.get(i);
+        Path target = sealedFileFor(log, sequence + i, cut[2], cut[3]);
+        target = target.resolveSibling(target.getFileName() + COMPRESSED_SUFFIX);
+        Path targetIndex = HistoryTimeIndex.indexFileFor(target);
+        writeCompressed(log, cut[0], cut[1],
+            target.resolveSibling(target.getFileName() + MIGRATION_SUFFIX), index,
+            targetIndex.resolveSibling(targetIndex.getFileName() + MIGRATION_SUFFIX));
+      }
+    }
+    // Хвост журнала - новый активный файл
+    long[] tail = cuts.get(cuts.size() - 1);
+    Path activeCopy = log.resolveSibling(log.getFileName() + MIGRATION_SUFFIX);
+    try (FileChannel source = FileChannel.open(log, StandardOpenOption.READ);
+        FileChannel target = FileChannel.open(activeCopy, StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      long position = tail[0];
+      while (position < tail[1]) {
+        position += source.transferTo(position, tail[1] - position, target);
+      }
+      target.force(false);
+    }
+    Files.createFile(marker);
+    completeMigration(log, marker);
+    return true;
+  }
+
+  // Завершает перенос: временные файлы получают окончательные имена, индекс и контрольная точка итогов
+  // прежнего журнала удаляются (они будут построены заново), в конце удаляется отметка переноса
+  private static void completeMigration(Path log, Path marker) throws IOException {
+    for (Path file : migrationFiles(log)) {
+      String name = file.getFileName().toString();
+      moveAtomically(file,
+          file.resolveSibling(name.substring(0, name.length() - MIGRATION_SUFFIX.length())));
+    }
+    Files.deleteIfExists(HistoryTimeIndex.indexFileFor(log));
+    Files.deleteIfExists(HistoryAggregates.checkpointFileFor(log));
+    Files.delete(marker);
+  }
+
+  private static void deleteMigrationFiles(Path log) throws IOException {
+    for (Path file : migrationFiles(log)) {
+      Files.delete(file);
+    }
+  }
+
+  // Временные файлы переноса: сегменты и копия хвоста журнала
+  private static List<Path> migrationFiles(Path log) throws IOException {
+    List<Path> files = new ArrayList<>();
+    try (DirectoryStream<Path> directory = Files.newDirectoryStream(directoryOf(log),
+        log.getFileName() + "*" + MIGRATION_SUFFIX)) {
+      directory.forEach(files::add);
+    }
+    return files;
+  }
+
+  // Переименовывает файл атомарно, если файловая система это поддерживает
+  static void moveAtomically(Path source, Path target) throws IOException {
+    try {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  // Сжимает часть файла [from, to) в файл target и сбрасывает его на диск.
+  // Новый член GZIP начинается на записях индекса index не реже чем через MEMBER_SIZE байт;
+  // если индекс задан, начала членов записываются в индекс indexTarget.
+  private static void writeCompressed(Path source, long from, long to, Path target,
+      HistoryTimeIndex index, Path indexTarget) throws IOException {
+    // Начала членов: дата интервала и смещение в исходном файле
+    long[] buckets = new long[16];
+    long[] starts = new long[16];
+    int members = 0;
+    if (index != null) {
+      for (int i = 0; i < index.size(); i++) {
+        long offset = index.offsetAt(i);
+        if (offset < from || offset >= to
+            || (members > 0 && offset - starts[members - 1] < MEMBER_SIZE)) {
+          continue;
+        }
+        if (members == 0 && offset > from) {
+          // Перед первой записью индекса есть записи без даты
+          buckets[members] = Long.MIN_VALUE;
+          starts[members++] = from;
+        }
+        if (members == buckets.length) {
+          buckets = Arrays.copyOf(buckets, members * 2);
+          starts = Arrays.copyOf(starts, members * 2);
+        }
+        buckets[members] = index.bucketAt(i);
+        starts[members++] = offset;
+      }
+    }
+    if (members == 0) {
+      buckets[0] = Long.MIN_VALUE;
+      starts[members++] = from;
+    }
+    // Те же члены со смещениями в сжатом файле
+    long[] compressedStarts = new long[members];
+    try (FileChannel input = FileChannel.open(source, StandardOpenOption.READ);
+        FileChannel output = FileChannel.open(target, StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+      for (int member = 0; member < members; member++) {
+        compressedStarts[member] = output.position();
+        long end = member + 1 < members ? starts[member + 1] : to;
+        // Закрытие члена завершает его и освобождает память сжатия, но не закрывает канал
+        try (GZIPOutputStream compressed = new GZIPOutputStream(
+            new UnclosableOutputStream(Channels.newOutputStream(output)), BUFFER_SIZE)) {
+          long position = starts[member];
+          while (position < end) {
+            buffer.clear().limit((int) Math.min(BUFFER_SIZE, end - position));
+            int read = input.read(buffer, position);
+            if (read < 0) {
+              throw new IOException("Файл журнала истории короче ожидаемого: " + source);
+            }
+            compressed.write(buffer.array(), 0, read);
+            position += read;
+          }
+        }
+      }
+      output.force(false);
+      if (index != null) {
+        HistoryTimeIndex.write(indexTarget, index.getBucketMillis(), output.size(), buckets,
+            compressedStarts, members);
+      }
+    }
+  }
+
+  // Закрытые сегменты журнала (сжатые и несжатые) в произвольном порядке
+  private static List<Segment> sealedSegments(Path log) throws IOException {
+    Pattern pattern = Pattern.compile(Pattern.quote(log.getFileName().toString())
+        + "\\.(\\d+)\\.(-?\\d+)_(-?\\d+)(\\.gz)?");
+    List<Segment> segments = new ArrayList<>();
+    Path directory = directoryOf(log);
+    if (!Files.isDirectory(directory)) {
+      return segments;
+    }
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+        log.getFileName() + ".*")) {
+      for (Path file : files) {
+        Matcher matcher = pattern.matcher(file.getFileName().toString());
+        if (matcher.matches()) {
+          segments.add(new Segment(file, Long.parseLong(matcher.group(1)),
+              Long.parseLong(matcher.group(2)), Long.parseLong(matcher.group(3)),
+              matcher.group(4) != null, false));
+        }
+      }
+    }
+    segments.sort(Comparator.comparingLong(Segment::getSequence));
+    return segments;
+  }
+
+  private static Path directoryOf(Path log) {
+    return log.toAbsolutePath().getParent();
+  }
+
+  // Открывает сегмент для чтения с места, найденного по индексу для даты fromMillis
+  // (Long.MIN_VALUE - с начала). Если несжатый сегмент успели сжать после получения списка
+  // сегментов, читается сжатый файл.
+  static InputStream open(Segment segment, long fromMillis) throws IOException {
+    Path file = segment.file;
+    boolean compressed = segment.compressed;
+    FileChannel channel;
+    try {
+      channel = FileChannel.open(file, StandardOpenOption.READ);
+    } catch (NoSuchFileException e) {
+      if (compressed || segment.active) {
+        throw e;
+      }
+      file = file.resolveSibling(file.getFileName() + COMPRESSED_SUFFIX);
+      compressed = true;
+      channel = FileChannel.open(file, StandardOpenOption.READ);
+    }
+    try {
+      if (fromMillis != Long.MIN_VALUE) {
+        HistoryTimeIndex index = HistoryTimeIndex.read(file);
+        if (index != null) {
+          channel.position(index.seek(fromMillis));
+        }
+      }
+      InputStream input = Channels.newInputStream(channel);
+      return compressed ? new GZIPInputStream(input, BUFFER_SIZE)
+          : new BufferedInputStream(input, BUFFER_SIZE);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  // Читает очередную порцию двоичных записей; пустой список - записи закончились
+  private static List<ExchangeRecord> readChunk(InputStream input, byte[] chunk,
+      ByteBuffer buffer) {
+    try {
+      int length = input.readNBytes(chunk, 0, chunk.length);
+      List<ExchangeRecord> records = new ArrayList<>(length / HistoryFormat.RECORD_SIZE);
+      for (int offset = 0; offset + HistoryFormat.RECORD_SIZE <= length;
+          offset += HistoryFormat.RECORD_SIZE) {
+        records.add(HistoryFormat.decodeBinary(buffer, offset));
+      }
+      return records;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static void closeQuietly(Closeable closeable) {
+    try {
+      closeable.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static long saturatedAdd(long value, long delta) {
+    long result = value + delta;
+    // Переполнение: знак результата отличается от знаков обоих слагаемых
+    if (((value ^ result) & (delta ^ result)) < 0) {
+      return value < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+    }
+    return result;
+  }
+
+  // Поток, закрытие которого не закрывает канал файла: в один канал пишется несколько членов GZIP
+  private static final class UnclosableOutputStream extends FilterOutputStream {
+
+    UnclosableOutputStream(OutputStream output) {
+      super(output);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+      out.write(bytes, offset, length);
+    }
+
+    @Override
+    public void close() throws IOException {
+      flush();
+    }
+  }
+}
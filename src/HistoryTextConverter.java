@@ -0,0 +1,97 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/* Класс HistoryTextConverter переводит существующий текстовый журнал "history.txt"
+   в двоичный формат HistoryFormat.BINARY. Строки, которые не удается разобрать,
+   пропускаются и подсчитываются, чтобы одна испорченная строка не останавливала конвертацию.
+   Текстовый журнал хранится сегментами (HistorySegments), поэтому переносятся все закрытые
+   сегменты в порядке номеров (сжатые распаковываются) и за ними активный файл.
+   Двоичный файл получается монолитным - журнал разделит его на сегменты при первом запуске.
+   Запуск: java HistoryTextConverter [history.txt] [history.bin]
+ */
+public class HistoryTextConverter {
+
+  // Итог конвертации: сколько записей перенесено и сколько строк пропущено
+  public static final class Result {
+    private final long converted;
+    private final long skipped;
+
+    Result(long converted, long skipped) {
+      this.converted = converted;
+      this.skipped = skipped;
+    }
+
+    public long getConverted() {
+      return converted;
+    }
+
+    public long getSkipped() {
+      return skipped;
+    }
+  }
+
+  // Читает текстовый журнал source со всеми его сегментами и дописывает записи в двоичный файл target
+  public static Result convert(Path source, Path target) throws IOException {
+    List<HistorySegments.Segment> segments = HistorySegments.list(source);
+    if (segments.isEmpty()) {
+      throw new NoSuchFileException(source.toString());
+    }
+    HistoryLineParser parser = new HistoryLineParser();
+    ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * HistoryFormat.RECORD_SIZE);
+    long converted = 0;
+    long skipped = 0;
+    try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+      for (HistorySegments.Segment segment : segments) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+            HistorySegments.open(segment, Long.MIN_VALUE), StandardCharsets.UTF_8))) {
+          String line;
+          while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+              continue;
+            }
+            ExchangeRecord exchangeRecord;
+            try {
+              exchangeRecord = parser.parse(line);
+            } catch (IllegalArgumentException e) {
+              skipped++;
+              continue;
+            }
+            if (!buffer.hasRemaining()) {
+              writeBuffer(channel, buffer);
+            }
+            HistoryFormat.BINARY.encode(exchangeRecord, buffer);
+            converted++;
+          }
+        }
+      }
+      writeBuffer(channel, buffer);
+    }
+    return new Result(converted, skipped);
+  }
+
+  private static void writeBuffer(FileChannel channel, ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  public static void main(String[] args) throws IOException {
+    Path source = Paths.get(args.length > 0 ? args[0] : HistoryFormat.TEXT.getDefaultFileName());
+    Path target = Paths.get(args.length > 1 ? args[1] : HistoryFormat.BINARY.getDefaultFileName());
+    Result result = convert(source, target);
+    System.out.println("Перенесено записей: " + result.getConverted()
+        + ", пропущено строк: " + result.getSkipped());
+  }
+}
@@ -0,0 +1,307 @@
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/* Класс HistoryTimeIndex - разреженный индекс журнала истории по времени.
+   Время разбивается на интервалы длиной bucketMillis; для каждого интервала, в котором был обмен,
+   индекс хранит смещение в файле журнала первой записи этого интервала. Поиск интервала по дате
+   выполняется двоичным поиском за O(log n), после чего чтение журнала начинается прямо с найденного
+   смещения, без просмотра всего файла.
+   Индекс хранится рядом с журналом в файле "<имя журнала>.idx":
+     заголовок (16 байт): длина интервала bucketMillis и длина уже проиндексированной части журнала;
+     далее пары (начало интервала, смещение в журнале) по 16 байт.
+   Журнал HistoryJournal дополняет индекс по мере записи. Если файла индекса нет или он не соответствует
+   журналу, индекс строится заново по журналу; если журнал дописывался без индекса, индексируется только хвост.
+   Сжатые сегменты журнала (см. HistorySegments) имеют индекс того же формата, но его смещения указывают
+   на начала членов GZIP в сжатом файле, с которых можно начинать распаковку.
+ */
+public class HistoryTimeIndex implements AutoCloseable {
+
+  // Длина интервала индекса по умолчанию - одна минута
+  public static final long DEFAULT_BUCKET_MILLIS = 60_000;
+
+  private static final int HEADER_SIZE = 16;
+  private static final int ENTRY_SIZE = 16;
+
+  // Канал файла индекса; null, если индекс открыт только для чтения
+  private final FileChannel channel;
+  // Длина интервала в миллисекундах
+  private final long bucketMillis;
+  // Начала интервалов и смещения их первых записей, упорядоченные по времени
+  private long[] buckets = new long[256];
+  private long[] offsets = new long[256];
+  private int size;
+  // Сколько записей индекса уже сохранено в файл
+  private int persisted;
+  // Длина журнала, которая уже учтена в индексе
+  private long indexedLength;
+  // Буфер заголовка, переиспользуется при каждом сохранении
+  private final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+
+  private HistoryTimeIndex(FileChannel channel, long bucketMillis) {
+    this.channel = channel;
+    this.bucketMillis = bucketMillis;
+  }
+
+  // Файл индекса для журнала
+  public static Path indexFileFor(Path log) {
+    return log.resolveSibling(log.getFileName() + ".idx");
+  }
+
+  // Открывает индекс журнала для дополнения. Отсутствующий или не соответствующий журналу индекс
+  // строится заново; непроиндексированный хвост журнала индексируется.
+  public static HistoryTimeIndex open(Path log, HistoryFormat format, long bucketMillis)
+      throws IOException {
+    Path indexFile = indexFileFor(log);
+    FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      long logLength = Files.exists(log) ? Files.size(log) : 0;
+      HistoryTimeIndex index = load(channel, bucketMillis);
+      if (index == null || index.indexedLength > logLength) {
+        // Индекса нет или журнал был заменен - строим индекс с нуля
+        channel.truncate(0);
+        index = new HistoryTimeIndex(channel, bucketMillis);
+      } else {
+        // Отбрасываем записи, сохраненные после последнего обновления заголовка
+        channel.truncate(HEADER_SIZE + (long) index.size * ENTRY_SIZE);
+      }
+      if (index.indexedLength < logLength) {
+        index.indexLog(log, format, index.indexedLength);
+      }
+      index.sync(logLength);
+      return index;
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  // Читает индекс журнала только для запросов. Возвращает null, если индекса нет.
+  public static HistoryTimeIndex read(Path log) throws IOException {
+    Path indexFile = indexFileFor(log);
+    if (!Files.exists(indexFile)) {
+      return null;
+    }
+    try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+      HistoryTimeIndex loaded = load(channel, DEFAULT_BUCKET_MILLIS);
+      if (loaded == null) {
+        return null;
+      }
+      HistoryTimeIndex index = new HistoryTimeIndex(null, loaded.bucketMillis);
+      index.buckets = loaded.buckets;
+      index.offsets = loaded.offsets;
+      index.size = loaded.size;
+      index.persisted = loaded.size;
+      index.indexedLength = loaded.indexedLength;
+      return index;
+    }
+  }
+
+  public long getBucketMillis() {
+    return bucketMillis;
+  }
+
+  // Количество записей индекса
+  public int size() {
+    return size;
+  }
+
+  // Начало интервала записи индекса с номером i
+  public long bucketAt(int i) {
+    return buckets[i];
+  }
+
+  // Смещение в журнале первой записи интервала с номером i
+  public long offsetAt(int i) {
+    return offsets[i];
+  }
+
+  // Записывает готовый индекс из size пар (начало интервала, смещение) в файл indexFile
+  static void write(Path indexFile, long bucketMillis, long indexedLength, long[] buckets,
+      long[] offsets, int size) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + size * ENTRY_SIZE);
+    buffer.putLong(bucketMillis).putLong(indexedLength);
+    for (int i = 0; i < size; i++) {
+      buffer.putLong(buckets[i]).putLong(offsets[i]);
+    }
+    buffer.flip();
+    try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      channel.force(false);
+    }
+  }
+
+  // Учитывает запись журнала с датой epochMillis, начинающуюся со смещения offset.
+  // Новая запись индекса добавляется только при переходе в более поздний интервал.
+  public void add(long epochMillis, long offset) {
+    long bucket = Math.floorDiv(epochMillis, bucketMillis) * bucketMillis;
+    if (size > 0 && bucket <= buckets[size - 1]) {
+      return;
+    }
+    if (size == buckets.length) {
+      buckets = Arrays.copyOf(buckets, size * 2);
+      offsets = Arrays.copyOf(offsets, size * 2);
+    }
+    buckets[size] = bucket;
+    offsets[size] = offset;
+    size++;
+  }
+
+  // Сохраняет в файл записи индекса, которые указывают на уже записанную часть журнала длиной logLength
+  public void sync(long logLength) throws IOException {
+    int count = persisted;
+    while (count < size && offsets[count] < logLength) {
+      count++;
+    }
+    if (count > persisted) {
+      ByteBuffer entries = ByteBuffer.allocate((count - persisted) * ENTRY_SIZE);
+      for (int i = persisted; i < count; i++) {
+        entries.putLong(buckets[i]).putLong(offsets[i]);
+      }
+      entries.flip();
+      writeFully(entries, HEADER_SIZE + (long) persisted * ENTRY_SIZE);
+      persisted = count;
+    }
+    indexedLength = logLength;
+    header.clear();
+    header.putLong(bucketMillis).putLong(indexedLength).flip();
+    writeFully(header, 0);
+  }
+
+  // Смещение в журнале, с которого нужно начинать чтение, чтобы не пропустить записи с датой >= fromMillis.
+  // Берется интервал, предшествующий интервалу fromMillis: так запрос не теряет записи, которые
+  // попали в журнал с небольшим опозданием относительно своей даты (запись из нескольких потоков).
+  public long seek(long fromMillis) {
+    long target = fromMillis - bucketMillis;
+    int low = 0;
+    int high = size - 1;
+    int found = -1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      if (buckets[middle] <= target) {
+        found = middle;
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return found < 0 ? 0 : offsets[found];
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (channel != null) {
+      channel.close();
+    }
+  }
+
+  // Загружает индекс из файла; возвращает null, если файл пуст или поврежден
+  private static HistoryTimeIndex load(FileChannel channel, long defaultBucketMillis)
+      throws IOException {
+    long length = channel.size();
+    if (length < HEADER_SIZE) {
+      return null;
+    }
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    readFully(channel, header, 0);
+    long bucketMillis = header.getLong(0);
+    long indexedLength = header.getLong(8);
+    if (bucketMillis <= 0 || indexedLength < 0) {
+      return null;
+    }
+    int count = (int) ((length - HEADER_SIZE) / ENTRY_SIZE);
+    ByteBuffer entries = ByteBuffer.allocate(count * ENTRY_SIZE);
+    readFully(channel, entries, HEADER_SIZE);
+    HistoryTimeIndex index = new HistoryTimeIndex(channel, bucketMillis);
+    index.buckets = new long[Math.max(256, count)];
+    index.offsets = new long[Math.max(256, count)];
+    for (int i = 0; i < count; i++) {
+      long offset = entries.getLong(i * ENTRY_SIZE + 8);
+      // Записи, сохраненные после последнего обновления заголовка, отбрасываются
+      if (offset >= indexedLength) {
+        break;
+      }
+      index.buckets[i] = entries.getLong(i * ENTRY_SIZE);
+      index.offsets[i] = offset;
+      index.size++;
+    }
+    index.persisted = index.size;
+    index.indexedLength = indexedLength;
+    return index;
+  }
+
+  // Индексирует журнал начиная со смещения from (граница записи)
+  private void indexLog(Path log, HistoryFormat format, long from) throws IOException {
+    if (format == HistoryFormat.BINARY) {
+      try (BinaryHistoryReader reader = new BinaryHistoryReader(log)) {
+        long first = from / HistoryFormat.RECORD_SIZE;
+        long[] position = {first * HistoryFormat.RECORD_SIZE};
+        reader.scan(first, reader.size(), (epochMillis, amount, source, target, result,
+            rateVersion) -> {
+          add(epochMillis, position[0]);
+          position[0] += HistoryFormat.RECORD_SIZE;
+        });
+      }
+      return;
+    }
+    HistoryLineParser parser = new HistoryLineParser();
+    try (FileChannel logChannel = FileChannel.open(log, StandardOpenOption.READ);
+        InputStream input = new BufferedInputStream(
+            Channels.newInputStream(logChannel.position(from)), 64 * 1024)) {
+      byte[] line = new byte[256];
+      int length = 0;
+      long lineStart = from;
+      long position = from;
+      int next;
+      while ((next = input.read()) >= 0) {
+        position++;
+        if (next != '\n') {
+          if (length == line.length) {
+            line = Arrays.copyOf(line, length * 2);
+          }
+          line[length++] = (byte) next;
+          continue;
+        }
+        String text = new String(line, 0, length, StandardCharsets.UTF_8).trim();
+        if (!text.isEmpty()) {
+          try {
+            add(parser.parse(text).getEpochMillis(), lineStart);
+          } catch (IllegalArgumentException e) {
+            // Строка, которую не удается разобрать, в индекс не попадает
+          }
+        }
+        length = 0;
+        lineStart = position;
+      }
+    }
+  }
+
+  private void writeFully(ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer, position);
+    }
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position + buffer.position());
+      if (read < 0) {
+        throw new IOException("Файл индекса истории поврежден.");
+      }
+    }
+    buffer.flip();
+  }
+}
@@ -0,0 +1,155 @@
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Класс LatencyHistogram - гистограмма задержек в наносекундах для нагруженных путей.
+   Интервалы логарифмические: каждая степень двойки делится на SUB_BUCKETS равных частей,
+   поэтому относительная погрешность процентилей не превышает 1 / SUB_BUCKETS (25%)
+   при любом масштабе - от десятков наносекунд до секунд.
+   Счетчики интервалов - LongAdder: потоки, которые одновременно записывают задержки,
+   увеличивают разные ячейки счетчика и не конкурируют за одну строку кэша.
+   Запись не создает объектов (LongAdder выделяет ячейки только при первой конкуренции).
+ */
+public final class LatencyHistogram {
+
+  // Каждая степень двойки делится на 2^SUB_BUCKET_BITS интервалов
+  private static final int SUB_BUCKET_BITS = 2;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  // Количество интервалов: значения меньше SUB_BUCKETS хранятся точно,
+  // далее по SUB_BUCKETS интервалов на каждую степень двойки до 2^63
+  private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final LongAdder[] counts = new LongAdder[BUCKETS];
+  private final LongAdder totalNanos = new LongAdder();
+  private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+  public LatencyHistogram() {
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] = new LongAdder();
+    }
+  }
+
+  // Записывает одну задержку; отрицательные значения (скачок часов) считаются нулем
+  public void record(long nanos) {
+    long value = Math.max(nanos, 0);
+    counts[bucketOf(value)].increment();
+    totalNanos.add(value);
+    maxNanos.accumulate(value);
+  }
+
+  // Снимок текущего состояния гистограммы. Счетчики читаются без блокировки, поэтому
+  // при одновременной записи снимок может не включать последние несколько значений.
+  public Snapshot snapshot() {
+    long[] bucketCounts = new long[BUCKETS];
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      bucketCounts[i] = counts[i].sum();
+      count += bucketCounts[i];
+    }
+    long mean = count == 0 ? 0 : totalNanos.sum() / count;
+    // Верхняя граница интервала может оказаться больше наибольшего записанного значения
+    long max = maxNanos.get();
+    return new Snapshot(count, mean, Math.min(percentile(bucketCounts, count, 0.50), max),
+        Math.min(percentile(bucketCounts, count, 0.99), max),
+        Math.min(percentile(bucketCounts, count, 0.999), max), max);
+  }
+
+  // Сбрасывает все счетчики
+  public void reset() {
+    for (LongAdder count : counts) {
+      count.reset();
+    }
+    totalNanos.reset();
+    maxNanos.reset();
+  }
+
+  // Номер интервала для значения: для значений меньше SUB_BUCKETS - само значение, иначе
+  // старший бит (степень двойки) и следующие за ним SUB_BUCKET_BITS битов
+  private static int bucketOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  // Верхняя граница интервала (наибольшее значение, которое в него попадает)
+  private static long upperBoundOf(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    long lowerBound = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+    return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+  }
+
+  // Значение, не больше которого доля quantile всех записанных задержек (по верхней границе интервала)
+  private static long percentile(long[] bucketCounts, long count, double quantile) {
+    if (count == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(quantile * count);
+    long seen = 0;
+    for (int i = 0; i < bucketCounts.length; i++) {
+      seen += bucketCounts[i];
+      if (seen >= rank) {
+        return upperBoundOf(i);
+      }
+    }
+    return upperBoundOf(bucketCounts.length - 1);
+  }
+
+  /* Снимок гистограммы: количество значений, среднее, процентили и максимум в наносекундах.
+     Класс с getter-методами, поэтому JMX отображает его как составное значение (CompositeData).
+   */
+  public static final class Snapshot {
+
+    private final long count;
+    private final long meanNanos;
+    private final long p50Nanos;
+    private final long p99Nanos;
+    private final long p999Nanos;
+    private final long maxNanos;
+
+    Snapshot(long count, long meanNanos, long p50Nanos, long p99Nanos, long p999Nanos,
+        long maxNanos) {
+      this.count = count;
+      this.meanNanos = meanNanos;
+      this.p50Nanos = p50Nanos;
+      this.p99Nanos = p99Nanos;
+      this.p999Nanos = p999Nanos;
+      this.maxNanos = maxNanos;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public long getMeanNanos() {
+      return meanNanos;
+    }
+
+    public long getP50Nanos() {
+      return p50Nanos;
+    }
+
+    public long getP99Nanos() {
+      return p99Nanos;
+    }
+
+    public long getP999Nanos() {
+      return p999Nanos;
+    }
+
+    public long getMaxNanos() {
+      return maxNanos;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("n=%d, среднее=%.1f мкс, p50=%.1f мкс, p99=%.1f мкс, p99.9=%.1f мкс, "
+              + "макс=%.1f мкс", count, meanNanos / 1000.0, p50Nanos / 1000.0, p99Nanos / 1000.0,
+          p999Nanos / 1000.0, maxNanos / 1000.0);
+    }
+  }
+}
@@ -1,5 +1,11 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.InputMismatchException;
+import java.util.NoSuchElementException;
 import java.util.Scanner;
+import javax.management.JMException;
 
 // Определяем основной класс приложения
 // Определяем основной класс программы с именем Main.
@@ -7,10 +13,30 @@ public class Main {
 
   // Главный метод программы, который запускается при её старте.
   public static void main(String[] args) {
+    // Если программа запущена с аргументом "server [порт]", запускаю сетевой сервер обмена вместо меню.
+    if (args.length > 0 && args[0].equalsIgnoreCase("server")) {
+      int port = args.length > 1 ? parsePort(args[1]) : ExchangeServer.DEFAULT_PORT;
+      if (port < 0) {
+        System.out.println("Неверный порт: " + args[1] + ". Порт должен быть числом от 0 до 65535.");
+        System.out.println("Использование: java Main server [порт]");
+        return;
+      }
+      runServer(port);
+      return;
+    }
     // Создаю объект приложения для обмена валют, чтобы использовать его функционал.
     CurrencyExchangeApp currencyExchangeApp = new CurrencyExchangeApp();
+    // Журнал истории сбрасывает записи на диск в фоновом потоке, поэтому при остановке процесса
+    // (Ctrl+C) приложение закрывается в обработчике завершения, как и сервер в runServer.
+    Runtime.getRuntime().addShutdownHook(new Thread(currencyExchangeApp::shutdown));
     // Создаю объект Scanner для считывания пользовательского ввода из консоли.
     Scanner scanner = new Scanner(System.in);
+    // Если есть каталог с файлами курсов (по умолчанию "rates", задается свойством rates.dir),
+    // запускаю ленту обновления курсов, чтобы курсы менялись без перезапуска программы.
+    Path ratesDirectory = Paths.get(System.getProperty("rates.dir", "rates"));
+    if (Files.isDirectory(ratesDirectory)) {
+      currencyExchangeApp.startRateFeed(ratesDirectory);
+    }
     // Вызываю метод для отображения списка аббревиатур валют, доступных для обмена.
     currencyExchangeApp.displayCurrencyAbbreviations();
     // Использую переменную для отслеживания корректности ввода пользователя.
@@ -34,11 +60,21 @@ public class Main {
             break;
           case 2:
             // Если пользователь выбрал 2, вызываю метод для просмотра истории обменов.
-            currencyExchangeApp.viewExchangeHistory();
+            currencyExchangeApp.viewExchangeHistory(scanner);
             break;
           case 3:
-            // Если пользователь выбрал 3, выводится сообщение о выходе и цикл завершается.
+            // Если пользователь выбрал 3, вывожу метрики обменов и журнала истории.
+            currencyExchangeApp.printMetrics();
+            break;
+          case 4:
+            // Если пользователь выбрал 4, вывожу оборот по паре валют за сегодня.
+            currencyExchangeApp.viewPairTotals(scanner);
+            break;
+          case 5:
+            // Если пользователь выбрал 5, выводится сообщение о выходе и цикл завершается.
             System.out.println("Выход из программы. До свидания!");
+            // Перед выходом сбрасываю на диск историю обменов, которая еще в очереди журнала.
+            currencyExchangeApp.shutdown();
             validInput = true; // Устанавливаю флаг корректного ввода в true для выхода из цикла.
             break;
           default:
@@ -52,7 +88,57 @@ public class Main {
         System.out.println("Ошибка ввода. Введите число.");
         // Очищаю буфер сканера для предотвращения бесконечного цикла ошибок.
         scanner.nextLine();
+        // Ввод закончился (например, Ctrl+D или конец перенаправленного файла) - обычный выход.
+      } catch (NoSuchElementException e) {
+        System.out.println("Ввод завершен. Выход из программы.");
+        currencyExchangeApp.shutdown();
+        validInput = true;
       }
     }
   }
-}
\ No newline at end of file
+
+  // Разбирает номер порта из аргумента командной строки; -1, если это не число от 0 до 65535
+  private static int parsePort(String value) {
+    try {
+      int port = Integer.parseInt(value.trim());
+      return port >= 0 && port <= 65535 ? port : -1;
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  // Запускает сервер обмена ExchangeServer и работает до остановки процесса (например, Ctrl+C).
+  // При остановке сервер закрывается, а история обменов сбрасывается на диск.
+  private static void runServer(int port) {
+    ExchangeManager exchangeManager = new ExchangeManager();
+    try {
+      Path ratesDirectory = Paths.get(System.getProperty("rates.dir", "rates"));
+      if (Files.isDirectory(ratesDirectory)) {
+        new RateFeed(exchangeManager, ratesDirectory).start();
+      }
+      // Метрики сервера доступны через JMX (CurrencyExchange:type=ExchangeMetrics)
+      try {
+        exchangeManager.getMetrics().registerMBean();
+      } catch (JMException e) {
+        System.out.println("Ошибка регистрации метрик: " + e.getMessage());
+      }
+      ExchangeServer server = new ExchangeServer(exchangeManager, port);
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+        try {
+          server.close();
+        } catch (IOException e) {
+          System.out.println("Ошибка остановки сервера: " + e.getMessage());
+        }
+        exchangeManager.close();
+      }));
+      server.start();
+      System.out.println("Сервер обмена запущен на порту " + server.getPort());
+      server.awaitTermination();
+    } catch (IOException e) {
+      System.out.println("Ошибка запуска сервера: " + e.getMessage());
+      exchangeManager.close();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
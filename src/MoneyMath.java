@@ -0,0 +1,128 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Locale;
+
+/* Класс MoneyMath - точная арифметика денежных сумм в минимальных единицах валюты.
+   Сумма хранится как long - количество минимальных единиц (центов, грошей), их число знаков
+   задает CurrencyEnum.getMinorUnits(). Поэтому суммы не накапливают двоичную погрешность double,
+   а округление выполняется ровно один раз и выбранным режимом RoundingMode.
+   Все операции на обычных суммах выполняются над long без создания объектов;
+   BigDecimal используется только для сумм, которые не помещаются в точный диапазон.
+ */
+public final class MoneyMath {
+
+  // Граница точно представимых в double целых чисел: 2^53
+  private static final long MAX_EXACT_DOUBLE = 1L << 53;
+
+  private MoneyMath() {
+  }
+
+  // Определяет режим округления по системному свойству money.rounding (например, half_up);
+  // по умолчанию HALF_EVEN - так же округляет DecimalFormat, которым суммы выводятся на экран.
+  // Неизвестное значение не прерывает запуск: выводится сообщение и используется HALF_EVEN.
+  // Регистр меняется по Locale.ROOT, иначе в турецкой локали "half_even" не распознается.
+  public static RoundingMode roundingModeFromSystemProperty() {
+    String value = System.getProperty("money.rounding", "half_even");
+    try {
+      return RoundingMode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      System.out.println("Неверный режим округления money.rounding: " + value
+          + ". Используется HALF_EVEN.");
+      return RoundingMode.HALF_EVEN;
+    }
+  }
+
+  // Переводит сумму в минимальные единицы валюты.
+  // Если сумма уже кратна минимальной единице (10.25 для центов), перевод выполняется без объектов;
+  // лишние знаки (10.005) округляются режимом roundingMode через BigDecimal.
+  public static long toMinorUnits(double amount, CurrencyEnum currency, RoundingMode roundingMode) {
+    if (Double.isNaN(amount) || Double.isInfinite(amount)) {
+      throw new IllegalArgumentException("Неверная сумма: " + amount);
+    }
+    long factor = currency.getMinorUnitFactor();
+    double scaled = amount * factor;
+    if (Math.abs(scaled) < MAX_EXACT_DOUBLE) {
+      long minorUnits = Math.round(scaled);
+      // Деление двух точных чисел в double округляется корректно, поэтому совпадение означает,
+      // что amount - ближайшее к minorUnits / factor число double, то есть сама эта сумма
+      if ((double) minorUnits / factor == amount) {
+        return minorUnits;
+      }
+    }
+    return toMinorUnits(BigDecimal.valueOf(amount), currency, roundingMode);
+  }
+
+  // Переводит десятичную сумму в минимальные единицы валюты с округлением режимом roundingMode.
+  // В сообщениях об ошибке сумма выводится через toString: для 1e300 или 1e-300 это "1.0E+300",
+  // а не строка из сотен цифр, которую сервер вернул бы клиенту.
+  public static long toMinorUnits(BigDecimal amount, CurrencyEnum currency,
+      RoundingMode roundingMode) {
+    BigDecimal scaled;
+    try {
+      scaled = amount.setScale(currency.getMinorUnits(), roundingMode);
+    } catch (ArithmeticException e) {
+      // RoundingMode.UNNECESSARY: сумма не укладывается в минимальную единицу без округления
+      throw new IllegalArgumentException("Сумма " + amount
+          + " требует округления до " + currency.getMinorUnits() + " знаков.");
+    }
+    if (scaled.unscaledValue().bitLength() > 63) {
+      throw new IllegalArgumentException("Сумма слишком велика: " + amount);
+    }
+    return scaled.unscaledValue().longValue();
+  }
+
+  // Переводит сумму в минимальных единицах обратно в double: результат - ближайшее к точной
+  // десятичной сумме число double, поэтому при выводе через DecimalFormat("#.##") он не искажается
+  public static double toAmount(long minorUnits, CurrencyEnum currency) {
+    return (double) minorUnits / currency.getMinorUnitFactor();
+  }
+
+  // Точная десятичная сумма для сверки и вывода
+  public static BigDecimal toBigDecimal(long minorUnits, CurrencyEnum currency) {
+    return BigDecimal.valueOf(minorUnits, currency.getMinorUnits());
+  }
+
+  // Целочисленное деление dividend / divisor с округлением частного режимом roundingMode.
+  // Результат совпадает с BigDecimal.divide(divisor, 0, roundingMode), но без создания объектов.
+  // Для RoundingMode.UNNECESSARY при ненулевом остатке выбрасывается ArithmeticException.
+  public static long divide(long dividend, long divisor, RoundingMode roundingMode) {
+    long quotient = dividend / divisor;
+    long remainder = dividend - quotient * divisor;
+    if (remainder == 0) {
+      return quotient;
+    }
+    // Знак точного частного: 1 или -1
+    int signum = 1 | (int) ((dividend ^ divisor) >> 63);
+    boolean increment;
+    switch (roundingMode) {
+      case UNNECESSARY:
+        throw new ArithmeticException("Требуется округление.");
+      case DOWN:
+        increment = false;
+        break;
+      case UP:
+        increment = true;
+        break;
+      case CEILING:
+        increment = signum > 0;
+        break;
+      case FLOOR:
+        increment = signum < 0;
+        break;
+      default:
+        // HALF_UP, HALF_DOWN, HALF_EVEN: сравниваем остаток с половиной делителя.
+        // Разность |remainder| - (|divisor| - |remainder|) имеет знак 2|remainder| - |divisor|
+        // и не переполняется.
+        long absRemainder = Math.abs(remainder);
+        long comparison = absRemainder - (Math.abs(divisor) - absRemainder);
+        if (comparison == 0) {
+          increment = roundingMode == RoundingMode.HALF_UP
+              || (roundingMode == RoundingMode.HALF_EVEN && (quotient & 1) != 0);
+        } else {
+          increment = comparison > 0;
+        }
+        break;
+    }
+    return increment ? quotient + signum : quotient;
+  }
+}
@@ -0,0 +1,147 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/* Класс RateFeed - лента обновления курсов валют (заменитель рыночного фида).
+   Курсы читаются из файлов *.properties в заданном каталоге, по одной строке на валюту:
+     EUR=0.86
+     PLN=3.97
+   В файле можно указать только часть валют - остальные курсы сохраняются.
+   При запуске загружаются все файлы каталога в порядке имен, затем каталог отслеживается
+   через WatchService, и каждый новый или измененный файл публикуется как новый снимок курсов
+   в ExchangeManager. Файл с ошибкой пропускается целиком, текущие курсы при этом не меняются.
+   Чтобы наблюдатель не прочитал недописанный файл, новые курсы лучше записывать во временный
+   файл с другим расширением и затем переименовывать его в *.properties.
+ */
+public class RateFeed implements AutoCloseable {
+
+  private static final String EXTENSION = ".properties";
+
+  // Менеджер, в котором публикуются новые снимки курсов
+  private final ExchangeManager exchangeManager;
+  // Каталог с файлами курсов
+  private final Path directory;
+  // Служба наблюдения за каталогом и поток, который обрабатывает её события
+  private final WatchService watchService;
+  private final Thread watcherThread;
+
+  public RateFeed(ExchangeManager exchangeManager, Path directory) throws IOException {
+    this.exchangeManager = exchangeManager;
+    this.directory = directory;
+    this.watchService = directory.getFileSystem().newWatchService();
+    this.watcherThread = new Thread(this::watch, "rate-feed-watcher");
+    this.watcherThread.setDaemon(true);
+  }
+
+  // Загружает все файлы курсов каталога и начинает отслеживать изменения
+  public void start() throws IOException {
+    directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+        StandardWatchEventKinds.ENTRY_MODIFY);
+    loadAll();
+    watcherThread.start();
+  }
+
+  // Загружает все файлы курсов каталога в порядке имен
+  private void loadAll() throws IOException {
+    List<Path> files = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+      stream.forEach(files::add);
+    }
+    Collections.sort(files);
+    for (Path file : files) {
+      loadQuietly(file);
+    }
+  }
+
+  // Читает файл курсов и публикует новый снимок. Возвращает опубликованный снимок.
+  public RateSnapshot load(Path file) throws IOException {
+    return exchangeManager.updateExchangeRates(parse(file));
+  }
+
+  // Разбирает файл курсов; неизвестная валюта или неверный курс приводят к IllegalArgumentException
+  static Map<CurrencyEnum, Double> parse(Path file) throws IOException {
+    Properties properties = new Properties();
+    try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      properties.load(reader);
+    }
+    Map<CurrencyEnum, Double> rates = new EnumMap<>(CurrencyEnum.class);
+    for (String name : properties.stringPropertyNames()) {
+      CurrencyEnum currency = ExchangeManager.getCurrencyByAbbreviation(name.trim().toUpperCase());
+      try {
+        rates.put(currency, Double.parseDouble(properties.getProperty(name).trim()));
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Неверный курс валюты " + name + ": "
+            + properties.getProperty(name));
+      }
+    }
+    return rates;
+  }
+
+  // Прекращает отслеживание каталога
+  @Override
+  public void close() throws IOException {
+    watchService.close();
+  }
+
+  // Цикл потока-наблюдателя: ждет событий каталога и загружает измененные файлы.
+  // Если события были потеряны (OVERFLOW), неизвестно, какие файлы изменились,
+  // поэтому заново загружаются все файлы каталога.
+  private void watch() {
+    try {
+      while (true) {
+        WatchKey key = watchService.take();
+        for (WatchEvent<?> event : key.pollEvents()) {
+          if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            reloadQuietly();
+            continue;
+          }
+          Path file = directory.resolve((Path) event.context());
+          if (file.getFileName().toString().endsWith(EXTENSION) && Files.isRegularFile(file)) {
+            loadQuietly(file);
+          }
+        }
+        if (!key.reset()) {
+          return;
+        }
+      }
+    } catch (ClosedWatchServiceException e) {
+      // Лента закрыта методом close()
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // Загружает все файлы курсов после потери событий, сообщая об ошибке вместо выброса исключения
+  private void reloadQuietly() {
+    try {
+      loadAll();
+    } catch (IOException e) {
+      System.out.println("Ошибка загрузки курсов из " + directory + ": " + e.getMessage());
+    }
+  }
+
+  // Загружает файл курсов, сообщая об ошибке вместо выброса исключения
+  private void loadQuietly(Path file) {
+    try {
+      RateSnapshot snapshot = load(file);
+      System.out.println("Курсы обновлены из " + file.getFileName() + ", версия "
+          + snapshot.getVersion());
+    } catch (IOException | IllegalArgumentException e) {
+      System.out.println("Ошибка загрузки курсов из " + file.getFileName() + ": " + e.getMessage());
+    }
+  }
+}
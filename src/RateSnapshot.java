@@ -0,0 +1,97 @@
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/* Класс RateSnapshot - неизменяемый снимок таблицы курсов валют.
+   Снимок содержит номер версии, курсы к базовой валюте и построенные по ним матрицы кросс-курсов:
+   CrossRateMatrix для быстрого пересчета в double и FixedPointRateMatrix для точного пересчета
+   сумм в минимальных единицах валюты.
+   Нумерация версий продолжается между запусками программы (ExchangeManager начинает её со следующего
+   номера после версии последней записи истории), поэтому номер версии в истории однозначно
+   указывает на набор курсов. При обновлении курсов создается новый снимок со следующим номером
+   версии, а ExchangeManager подменяет ссылку на него атомарно. Поток, который начал пересчет со старым снимком,
+   дорабатывает с ним до конца, поэтому ни один пересчет не видит наполовину обновленную таблицу.
+ */
+public final class RateSnapshot {
+
+  // Номер версии снимка; растет на единицу при каждом обновлении курсов
+  private final int version;
+  // Курсы к базовой валюте (только для чтения)
+  private final Map<CurrencyEnum, Double> rates;
+  // Матрица кросс-курсов, построенная по rates
+  private final CrossRateMatrix matrix;
+  // Матрица точных кросс-курсов, построенная по rates
+  private final FixedPointRateMatrix fixedPointMatrix;
+
+  private RateSnapshot(int version, Map<CurrencyEnum, Double> rates) {
+    this.version = version;
+    this.rates = Collections.unmodifiableMap(new EnumMap<>(rates));
+    this.matrix = CrossRateMatrix.fromRates(this.rates);
+    this.fixedPointMatrix = FixedPointRateMatrix.fromRates(this.rates);
+  }
+
+  // Создает первый снимок (версия 1) из таблицы курсов
+  public static RateSnapshot initial(Map<CurrencyEnum, Double> rates) {
+    return initial(1, rates);
+  }
+
+  // Создает первый снимок с заданным номером версии (продолжение нумерации прошлого запуска)
+  public static RateSnapshot initial(int version, Map<CurrencyEnum, Double> rates) {
+    if (version < 1) {
+      throw new IllegalArgumentException("Номер версии курсов должен быть положительным: " + version);
+    }
+    validate(rates);
+    return new RateSnapshot(version, rates);
+  }
+
+  // Возвращает новый снимок, в котором курсы из updates заменяют текущие; остальные курсы сохраняются
+  public RateSnapshot withRates(Map<CurrencyEnum, Double> updates) {
+    validate(updates);
+    Map<CurrencyEnum, Double> merged = new EnumMap<>(CurrencyEnum.class);
+    merged.putAll(rates);
+    merged.putAll(updates);
+    return new RateSnapshot(version + 1, merged);
+  }
+
+  public int getVersion() {
+    return version;
+  }
+
+  public Map<CurrencyEnum, Double> getRates() {
+    return rates;
+  }
+
+  public CrossRateMatrix getMatrix() {
+    return matrix;
+  }
+
+  public FixedPointRateMatrix getFixedPointMatrix() {
+    return fixedPointMatrix;
+  }
+
+  // Пересчитывает сумму по курсам снимка; если для пары нет курса, выбрасывается IllegalArgumentException
+  public double convert(double amount, CurrencyEnum sourceCurrency, CurrencyEnum targetCurrency) {
+    double rate = matrix.rate(sourceCurrency, targetCurrency);
+    if (Double.isNaN(rate)) {
+      throw new IllegalArgumentException("Неверные валюты. Пожалуйста, выберите существующие валюты.");
+    }
+    return amount * rate;
+  }
+
+  // Точный пересчет суммы в минимальных единицах исходной валюты в минимальные единицы целевой
+  // с округлением режимом roundingMode; если для пары нет курса, выбрасывается IllegalArgumentException
+  public long convertMinorUnits(long amountMinor, CurrencyEnum sourceCurrency,
+      CurrencyEnum targetCurrency, RoundingMode roundingMode) {
+    return fixedPointMatrix.convert(amountMinor, sourceCurrency, targetCurrency, roundingMode);
+  }
+
+  private static void validate(Map<CurrencyEnum, Double> rates) {
+    for (Map.Entry<CurrencyEnum, Double> entry : rates.entrySet()) {
+      if (entry.getKey() == null || entry.getValue() == null || !(entry.getValue() > 0)
+          || Double.isInfinite(entry.getValue())) {
+        throw new IllegalArgumentException("Курс валюты должен быть положительным: " + entry);
+      }
+    }
+  }
+}
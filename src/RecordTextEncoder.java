@@ -0,0 +1,188 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Date;
+
+/* Класс RecordTextEncoder записывает строку текстового журнала истории прямо в байтовый буфер
+   в кодировке UTF-8, не создавая промежуточных строк. Результат совпадает байт в байт с
+   ExchangeRecord.toString():
+     Дата: <Date.toString()>, Сумма: <Double.toString(amount)> <SRC> -> <результат "#.##"> <описание>, Версия курсов: <N>
+   - постоянные части строки и описания валют заранее переведены в UTF-8;
+   - дата форматируется через Date.toString() не чаще одного раза в секунду, в остальное время
+     используются сохраненные байты;
+   - суммы записываются самописным форматированием; для очень больших или очень маленьких чисел
+     используется стандартное форматирование.
+   Объект не потокобезопасен: у каждого потока-писателя должен быть свой экземпляр.
+ */
+final class RecordTextEncoder {
+
+  private static final byte[] DATE_PREFIX = "Дата: ".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] AMOUNT_PREFIX = ", Сумма: ".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] ARROW = " -> ".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] VERSION_PREFIX =
+      ", Версия курсов: ".getBytes(StandardCharsets.UTF_8);
+  private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1_000L, 10_000L, 100_000L,
+      1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L, 10_000_000_000L, 100_000_000_000L,
+      1_000_000_000_000L, 10_000_000_000_000L, 100_000_000_000_000L, 1_000_000_000_000_000L};
+  // Границы, в которых Double.toString использует обычную (не экспоненциальную) запись
+  private static final double PLAIN_MIN = 1e-3;
+  private static final double PLAIN_MAX = 1e7;
+  // Больше этого значения число сотых не помещается в точное целое double
+  private static final double CENTS_MAX = 1e13;
+
+  // Десятичный разделитель, который использует DecimalFormat("#.##") в текущей локали
+  private final byte[] decimalSeparator;
+  // Стандартный формат для редких случаев, которые не обрабатываются самописным форматированием
+  private final DecimalFormat fallbackFormat = new DecimalFormat("#.##");
+  // Дата, отформатированная для последней встреченной секунды
+  private long cachedSecond = Long.MIN_VALUE;
+  private byte[] cachedDate;
+  // Рабочий массив для цифр
+  private final byte[] digits = new byte[20];
+
+  // Свой экземпляр для каждого потока (используется в HistoryFormat.TEXT и ExchangeRecord.toString)
+  private static final ThreadLocal<RecordTextEncoder> PER_THREAD =
+      ThreadLocal.withInitial(RecordTextEncoder::new);
+
+  static RecordTextEncoder forCurrentThread() {
+    return PER_THREAD.get();
+  }
+
+  RecordTextEncoder() {
+    char separator = DecimalFormatSymbols.getInstance().getDecimalSeparator();
+    this.decimalSeparator = String.valueOf(separator).getBytes(StandardCharsets.UTF_8);
+  }
+
+  // Записывает строку журнала (без перевода строки)
+  void encode(long epochMillis, double amount, CurrencyEnum sourceCurrency,
+      CurrencyEnum targetCurrency, double resultAmount, int rateVersion, ByteBuffer out) {
+    out.put(DATE_PREFIX);
+    putDate(epochMillis, out);
+    out.put(AMOUNT_PREFIX);
+    putDouble(amount, out);
+    out.put((byte) ' ');
+    putAscii(sourceCurrency.name(), out);
+    out.put(ARROW);
+    putTwoDecimals(resultAmount, out);
+    out.put((byte) ' ');
+    out.put(targetCurrency.getDescriptionUtf8());
+    out.put(VERSION_PREFIX);
+    putLong(rateVersion, out);
+  }
+
+  // Date.toString() с точностью до секунды: пересчитывается только при смене секунды
+  private void putDate(long epochMillis, ByteBuffer out) {
+    long second = Math.floorDiv(epochMillis, 1000);
+    if (second != cachedSecond) {
+      cachedDate = new Date(epochMillis).toString().getBytes(StandardCharsets.UTF_8);
+      cachedSecond = second;
+    }
+    out.put(cachedDate);
+  }
+
+  // То же, что Double.toString(value), для чисел в обычной записи, которые точно представляются
+  // не более чем 15 значащими цифрами (все реальные суммы обмена); иначе используется Double.toString.
+  private void putDouble(double value, ByteBuffer out) {
+    double abs = Math.abs(value);
+    if (abs == 0) {
+      putAscii(Double.doubleToRawLongBits(value) < 0 ? "-0.0" : "0.0", out);
+      return;
+    }
+    if (!(abs >= PLAIN_MIN && abs < PLAIN_MAX)) {
+      putAscii(Double.toString(value), out);
+      return;
+    }
+    // Ищем наименьшее число знаков после точки, при котором десятичная запись дает то же число
+    for (int scale = 0; scale < POWERS_OF_TEN.length && abs * POWERS_OF_TEN[scale] < 1e15;
+        scale++) {
+      long power = POWERS_OF_TEN[scale];
+      long scaled = Math.round(abs * power);
+      if ((double) scaled / power == abs) {
+        if (value < 0) {
+          out.put((byte) '-');
+        }
+        putLong(scaled / power, out);
+        out.put((byte) '.');
+        if (scale == 0) {
+          out.put((byte) '0');
+        } else {
+          putPadded(scaled % power, scale, out);
+        }
+        return;
+      }
+    }
+    putAscii(Double.toString(value), out);
+  }
+
+  // То же, что new DecimalFormat("#.##").format(value): не более двух знаков после разделителя,
+  // округление HALF_EVEN по точному двоичному значению, незначащие нули отбрасываются.
+  private void putTwoDecimals(double value, ByteBuffer out) {
+    double abs = Math.abs(value);
+    if (!(abs < CENTS_MAX)) {
+      putUtf8(fallbackFormat.format(value), out);
+      return;
+    }
+    // scaled - округленное произведение abs * 100, error - его точная погрешность (через fma),
+    // так что точное значение равно scaled + error. Сравнение дробной части с 0.5 выполняется
+    // с учетом погрешности, поэтому округление совпадает с округлением точного значения.
+    double scaled = abs * 100;
+    double error = Math.fma(abs, 100, -scaled);
+    double floor = Math.floor(scaled);
+    double aboveHalf = (scaled - floor - 0.5) + error;
+    long cents = (long) floor;
+    if (aboveHalf > 0 || (aboveHalf == 0 && (cents & 1) != 0)) {
+      cents++;
+    }
+    if (Double.doubleToRawLongBits(value) < 0) {
+      out.put((byte) '-');
+    }
+    putLong(cents / 100, out);
+    long fractionDigits = cents % 100;
+    if (fractionDigits != 0) {
+      out.put(decimalSeparator);
+      out.put((byte) ('0' + fractionDigits / 10));
+      if (fractionDigits % 10 != 0) {
+        out.put((byte) ('0' + fractionDigits % 10));
+      }
+    }
+  }
+
+  // Неотрицательное целое или отрицательное со знаком минус
+  private void putLong(long value, ByteBuffer out) {
+    if (value < 0) {
+      if (value == Long.MIN_VALUE) {
+        putAscii(Long.toString(value), out);
+        return;
+      }
+      out.put((byte) '-');
+      value = -value;
+    }
+    int position = digits.length;
+    do {
+      digits[--position] = (byte) ('0' + value % 10);
+      value /= 10;
+    } while (value != 0);
+    out.put(digits, position, digits.length - position);
+  }
+
+  // Неотрицательное целое, дополненное ведущими нулями до width цифр
+  private void putPadded(long value, int width, ByteBuffer out) {
+    int position = digits.length;
+    for (int i = 0; i < width; i++) {
+      digits[--position] = (byte) ('0' + value % 10);
+      value /= 10;
+    }
+    out.put(digits, position, width);
+  }
+
+  private static void putAscii(String text, ByteBuffer out) {
+    for (int i = 0; i < text.length(); i++) {
+      out.put((byte) text.charAt(i));
+    }
+  }
+
+  private static void putUtf8(String text, ByteBuffer out) {
+    out.put(text.getBytes(StandardCharsets.UTF_8));
+  }
+}
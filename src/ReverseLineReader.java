@@ -0,0 +1,104 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/* Класс ReverseLineReader читает текстовый файл в кодировке UTF-8 построчно с конца к началу.
+   Файл читается блоками через FileChannel, поэтому для получения последних N строк
+   не нужно просматривать весь файл. Разделителем служит байт '\n' (завершающий '\r' отбрасывается);
+   в UTF-8 этот байт не встречается внутри многобайтовых символов, поэтому резать блоки по нему безопасно.
+ */
+class ReverseLineReader implements Closeable {
+
+  private static final int BLOCK_SIZE = 64 * 1024;
+
+  private final FileChannel channel;
+  private final ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+  // Позиция в файле, до которой блоки еще не прочитаны
+  private long position;
+  // Конец строки, начало которой находится в еще не прочитанном блоке; null - строк больше нет
+  private byte[] carry = new byte[0];
+  // Готовые строки текущего блока в порядке от конца файла к началу
+  private final Deque<String> lines = new ArrayDeque<>();
+
+  ReverseLineReader(Path file) throws IOException {
+    this.channel = FileChannel.open(file, StandardOpenOption.READ);
+    this.position = channel.size();
+    // Завершающий перевод строки в конце файла не образует отдельной пустой строки
+    if (position > 0) {
+      ByteBuffer last = ByteBuffer.allocate(1);
+      channel.read(last, position - 1);
+      if (last.get(0) == '\n') {
+        position--;
+      }
+    } else {
+      carry = null;
+    }
+  }
+
+  // Возвращает предыдущую строку файла или null, если начало файла достигнуто
+  String readLine() throws IOException {
+    while (lines.isEmpty()) {
+      if (position == 0) {
+        if (carry == null) {
+          return null;
+        }
+        String first = decode(carry);
+        carry = null;
+        return first;
+      }
+      readBlock();
+    }
+    return lines.pollFirst();
+  }
+
+  // Читает предыдущий блок файла и разбивает его на строки
+  private void readBlock() throws IOException {
+    int size = (int) Math.min(BLOCK_SIZE, position);
+    position -= size;
+    block.clear().limit(size);
+    while (block.hasRemaining()) {
+      if (channel.read(block, position + block.position()) < 0) {
+        throw new IOException("Файл истории был усечен во время чтения.");
+      }
+    }
+    byte[] bytes = block.array();
+    int end = size;
+    for (int i = size - 1; i >= 0; i--) {
+      if (bytes[i] == '\n') {
+        lines.addLast(decode(concat(Arrays.copyOfRange(bytes, i + 1, end), carry)));
+        carry = new byte[0];
+        end = i;
+      }
+    }
+    carry = concat(Arrays.copyOfRange(bytes, 0, end), carry);
+  }
+
+  private static byte[] concat(byte[] head, byte[] tail) {
+    if (tail.length == 0) {
+      return head;
+    }
+    byte[] result = Arrays.copyOf(head, head.length + tail.length);
+    System.arraycopy(tail, 0, result, head.length, tail.length);
+    return result;
+  }
+
+  private static String decode(byte[] bytes) {
+    int end = bytes.length;
+    if (end > 0 && bytes[end - 1] == '\r') {
+      end--;
+    }
+    return new String(bytes, 0, end, StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
@@ -0,0 +1,106 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/* Тесты чтения истории ExchangeHistory: постраничный вывод, запросы во время ротации журнала.
+ */
+class ExchangeHistoryTest {
+
+  // 2024-01-01T00:00:00Z
+  private static final long START_MILLIS = 1_704_067_200_000L;
+  private static final int RECORDS = 25;
+
+  @TempDir
+  Path directory;
+
+  private ExchangeHistory history;
+
+  @BeforeEach
+  void writeHistory() throws InterruptedException {
+    Path file = directory.resolve("history.bin");
+    try (HistoryJournal journal = new HistoryJournal(file, HistoryFormat.BINARY)) {
+      for (int i = 0; i < RECORDS; i++) {
+        journal.append(new ExchangeRecord(START_MILLIS + i * 1000L, i, CurrencyEnum.USD,
+            CurrencyEnum.EUR, i * 0.85, 1));
+      }
+    }
+    history = new ExchangeHistory(file, HistoryFormat.BINARY);
+  }
+
+  @Test
+  void pagesSplitResultsInOrder() throws Exception {
+    List<ExchangeRecord> second = history.page(HistoryQuery.all(), 1, 10);
+    assertEquals(10, second.size());
+    assertEquals(10.0, second.get(0).getAmount());
+    assertEquals(5, history.page(HistoryQuery.all(), 2, 10).size());
+    assertTrue(history.page(HistoryQuery.all(), 3, 10).isEmpty());
+  }
+
+  @Test
+  void pageBeyondLongRangeIsEmpty() throws Exception {
+    assertTrue(history.page(HistoryQuery.all(), Long.MAX_VALUE, Integer.MAX_VALUE).isEmpty());
+    assertTrue(history.page(HistoryQuery.all(), Integer.MAX_VALUE, Integer.MAX_VALUE).isEmpty());
+  }
+
+  @Test
+  void invalidPageParametersAreRejected() {
+    assertThrows(IllegalArgumentException.class, () -> history.page(HistoryQuery.all(), -1, 10));
+    assertThrows(IllegalArgumentException.class, () -> history.page(HistoryQuery.all(), 0, 0));
+  }
+
+  @Test
+  void queriesDuringRotationSeeEveryRecord() throws Exception {
+    Path file = directory.resolve("rotating.bin");
+    ExchangeHistory rotating = new ExchangeHistory(file, HistoryFormat.BINARY);
+    AtomicBoolean done = new AtomicBoolean();
+    // Маленькие сегменты и частый сброс: ротация и сжатие идут, пока выполняются запросы
+    Thread writer = new Thread(() -> {
+      try (HistoryJournal journal = new HistoryJournal(file, HistoryFormat.BINARY, 1024, 16, 1,
+          64 * HistoryFormat.RECORD_SIZE, HistorySegments.DEFAULT_SEGMENT_MILLIS,
+          new ExchangeMetrics(false))) {
+        for (int i = 0; i < 20_000; i++) {
+          journal.append(new ExchangeRecord(START_MILLIS + i, i, CurrencyEnum.USD,
+              CurrencyEnum.EUR, i * 0.85, 1));
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        done.set(true);
+      }
+    });
+    writer.start();
+    try {
+      while (!done.get()) {
+        // Журнал пишется по порядку, поэтому любой запрос видит записи 0..n-1 без пропусков
+        assertPrefix(rotating.search(HistoryQuery.all()));
+        try (Stream<ExchangeRecord> records = rotating.stream(HistoryQuery.all())) {
+          assertPrefix(records.collect(Collectors.toList()));
+        }
+        List<ExchangeRecord> tail = rotating.tail(HistoryQuery.all(), 200);
+        for (int i = 1; i < tail.size(); i++) {
+          assertEquals(tail.get(i - 1).getAmount() + 1, tail.get(i).getAmount());
+        }
+      }
+    } finally {
+      writer.join();
+    }
+    assertEquals(20_000, rotating.search(HistoryQuery.all()).size());
+    assertFalse(HistorySegments.list(file).size() < 2);
+  }
+
+  private static void assertPrefix(List<ExchangeRecord> records) {
+    for (int i = 0; i < records.size(); i++) {
+      assertEquals(i, records.get(i).getAmount());
+    }
+  }
+}
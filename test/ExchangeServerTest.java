@@ -0,0 +1,49 @@
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/* Тесты сетевого интерфейса ExchangeServer: остановка при открытых соединениях клиентов.
+ */
+class ExchangeServerTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void closeDisconnectsIdleClients() throws Exception {
+    ExchangeManager exchangeManager = new ExchangeManager(directory.resolve("history.bin"),
+        HistoryFormat.BINARY);
+    try {
+      ExchangeServer server = new ExchangeServer(exchangeManager, 0);
+      server.start();
+      try (Socket client = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+        client.setSoTimeout(10_000);
+        BufferedReader reader = new BufferedReader(
+            new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+        Writer writer = new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8);
+        writer.write("100 USD EUR\n");
+        writer.flush();
+        assertTrue(reader.readLine().startsWith("OK "));
+
+        // Клиент простаивает: остановка не должна ждать его следующего запроса
+        long started = System.nanoTime();
+        server.close();
+        server.awaitTermination();
+        assertTrue(System.nanoTime() - started < 2_000_000_000L);
+        assertNull(reader.readLine());
+      }
+    } finally {
+      exchangeManager.close();
+    }
+  }
+}
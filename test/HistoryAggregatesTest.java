@@ -0,0 +1,133 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/* Тесты накопительных итогов HistoryAggregates: итоги за всё время, совпадение итогов,
+   восстановленных из контрольной точки, с построенными заново, сворачивание старых интервалов
+   в суточные.
+ */
+class HistoryAggregatesTest {
+
+  // 2024-01-01T00:00:00Z
+  private static final long START_MILLIS = 1_704_067_200_000L;
+  private static final long HOUR_MILLIS = 3_600_000L;
+  private static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+  private static final int DAYS = 10;
+  // Размер итогов одного интервала в контрольной точке: начало и пять массивов по числу пар
+  private static final long BUCKET_SIZE = 8 + 5 * 8L * CurrencyEnum.count() * CurrencyEnum.count();
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void allTimeTotalsIncludeEarliestRecords() throws Exception {
+    Path file = directory.resolve("history.bin");
+    try (HistoryJournal journal = new HistoryJournal(file, HistoryFormat.BINARY)) {
+      // Дата до 1970 года и дата, начало интервала которой ближе всего к Long.MIN_VALUE
+      journal.append(-1_000_000_000_000L, 10, CurrencyEnum.USD, CurrencyEnum.EUR, 8.5, 1);
+      journal.append(Long.MIN_VALUE + HOUR_MILLIS, 10, CurrencyEnum.USD, CurrencyEnum.EUR, 8.5, 1);
+      journal.append(START_MILLIS, 10, CurrencyEnum.USD, CurrencyEnum.EUR, 8.5, 1);
+    }
+    HistoryAggregates aggregates = HistoryAggregates.recover(file, HistoryFormat.BINARY,
+        HistoryAggregates.DEFAULT_BUCKET_MILLIS);
+    assertEquals(3, totals(aggregates, Long.MIN_VALUE, Long.MAX_VALUE).getCount());
+    assertEquals(3, totals(aggregates, Long.MIN_VALUE + 1, Long.MAX_VALUE).getCount());
+    assertEquals(1, totals(aggregates, 0, Long.MAX_VALUE).getCount());
+  }
+
+  @Test
+  void recoveredTotalsMatchRebuiltTotals() throws Exception {
+    Path file = directory.resolve("history.bin");
+    int currencies = CurrencyEnum.count();
+    // Записи разных пар за несколько суток: журнал закрывается посередине, поэтому восстановление
+    // начинается с контрольной точки, а продолжение журнала уходит в новые сегменты
+    for (int part = 0; part < 2; part++) {
+      try (HistoryJournal journal = new HistoryJournal(file, HistoryFormat.BINARY)) {
+        for (int i = part * 5_000; i < (part + 1) * 5_000; i++) {
+          int source = i % currencies;
+          int target = (source + 1 + (i / currencies) % (currencies - 1)) % currencies;
+          double amount = 10 + (i & 1023) * 0.25;
+          journal.append(START_MILLIS + i * 60_000L, amount, CurrencyEnum.byOrdinal(source),
+              CurrencyEnum.byOrdinal(target), amount * 0.85, 1);
+        }
+      }
+    }
+    HistoryAggregates recovered = HistoryAggregates.recover(file, HistoryFormat.BINARY,
+        HistoryAggregates.DEFAULT_BUCKET_MILLIS);
+    HistoryAggregates rebuilt = HistoryAggregates.rebuild(file, HistoryFormat.BINARY,
+        HistoryAggregates.DEFAULT_BUCKET_MILLIS);
+    assertEquals(rebuilt.getLogLength(), recovered.getLogLength());
+    long total = 0;
+    for (CurrencyEnum source : CurrencyEnum.values()) {
+      for (CurrencyEnum target : CurrencyEnum.values()) {
+        total += rebuilt.totals(source, target, Long.MIN_VALUE, Long.MAX_VALUE).getCount();
+        for (long from = START_MILLIS - DAY_MILLIS; from < START_MILLIS + 8 * DAY_MILLIS;
+            from += 7 * HOUR_MILLIS) {
+          assertEquals(rebuilt.totals(source, target, from, from + DAY_MILLIS).toString(),
+              recovered.totals(source, target, from, from + DAY_MILLIS).toString());
+        }
+      }
+    }
+    assertEquals(10_000, total);
+  }
+
+  @Test
+  void oldHoursAreRolledUpIntoDays() throws Exception {
+    Path file = directory.resolve("history.bin");
+    // Две записи в час на протяжении DAYS суток
+    try (HistoryJournal journal = new HistoryJournal(file, HistoryFormat.BINARY)) {
+      for (long time = START_MILLIS; time < START_MILLIS + DAYS * DAY_MILLIS;
+          time += HOUR_MILLIS / 2) {
+        journal.append(time, 10, CurrencyEnum.USD, CurrencyEnum.EUR, 8.5, 1);
+      }
+    }
+    // Последний интервал начинается в 23:00 десятых суток; часовыми остаются интервалы с начала
+    // суток, в которые попадает время на неделю раньше (третьи сутки), первые двое суток свернуты
+    long checkpoint = Files.size(HistoryAggregates.checkpointFileFor(file));
+    assertEquals(2 + (DAYS - 2) * 24, checkpoint / BUCKET_SIZE);
+
+    HistoryAggregates aggregates = HistoryAggregates.recover(file, HistoryFormat.BINARY,
+        HistoryAggregates.DEFAULT_BUCKET_MILLIS);
+    assertEquals(DAYS * 48, totals(aggregates, Long.MIN_VALUE, Long.MAX_VALUE).getCount());
+    // Свернутые сутки: запрос с середины суток учитывает их целиком
+    assertEquals(48, totals(aggregates, START_MILLIS + DAY_MILLIS + 5 * HOUR_MILLIS,
+        START_MILLIS + 2 * DAY_MILLIS).getCount());
+    // Часовая часть: точность до часа
+    long lastHour = START_MILLIS + DAYS * DAY_MILLIS - HOUR_MILLIS;
+    HistoryAggregates.Totals hour = totals(aggregates, lastHour + 1, Long.MAX_VALUE);
+    assertEquals(2, hour.getCount());
+    assertEquals(2000, hour.getAmountSumMinor());
+    assertEquals(1000, hour.getMinAmountMinor());
+  }
+
+  @Test
+  void lateRecordOfRolledUpDayIsCounted() throws Exception {
+    Path file = directory.resolve("history.bin");
+    try (HistoryJournal journal = new HistoryJournal(file, HistoryFormat.BINARY)) {
+      journal.append(START_MILLIS, 10, CurrencyEnum.USD, CurrencyEnum.EUR, 8.5, 1);
+      journal.append(START_MILLIS + DAYS * DAY_MILLIS, 10, CurrencyEnum.USD, CurrencyEnum.EUR,
+          8.5, 1);
+      journal.flush();
+      journal.getAggregates().checkpoint();
+      // Запоздавшая запись первых суток, которые уже свернуты
+      journal.append(START_MILLIS + 5 * HOUR_MILLIS, 20, CurrencyEnum.USD, CurrencyEnum.EUR,
+          17, 1);
+    }
+    HistoryAggregates aggregates = HistoryAggregates.recover(file, HistoryFormat.BINARY,
+        HistoryAggregates.DEFAULT_BUCKET_MILLIS);
+    HistoryAggregates.Totals firstDay = totals(aggregates, START_MILLIS,
+        START_MILLIS + DAY_MILLIS);
+    assertEquals(2, firstDay.getCount());
+    assertEquals(2000, firstDay.getMaxAmountMinor());
+    assertTrue(Files.size(HistoryAggregates.checkpointFileFor(file)) / BUCKET_SIZE <= 2);
+  }
+
+  private static HistoryAggregates.Totals totals(HistoryAggregates aggregates, long fromMillis,
+      long toMillis) {
+    return aggregates.totals(CurrencyEnum.USD, CurrencyEnum.EUR, fromMillis, toMillis);
+  }
+}
@@ -0,0 +1,116 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/* Тесты журнала истории HistoryJournal: восстановление после недописанной записи в конце файла,
+   отклонение сумм, которые нельзя учесть в итогах.
+ */
+class HistoryJournalTest {
+
+  // 2024-01-01T00:00:00Z
+  private static final long START_MILLIS = 1_704_067_200_000L;
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void binaryTornTailIsTruncatedOnOpen() throws Exception {
+    Path file = directory.resolve("history.bin");
+    List<ExchangeRecord> written = writeRecords(file, HistoryFormat.BINARY, 0, 3);
+    // Сбой посреди записи: в файле осталась половина двоичной записи
+    Files.write(file, new byte[HistoryFormat.RECORD_SIZE / 2], StandardOpenOption.APPEND);
+    written.addAll(writeRecords(file, HistoryFormat.BINARY, 3, 2));
+
+    assertEquals(0, Files.size(file) % HistoryFormat.RECORD_SIZE);
+    assertRecovered(file, HistoryFormat.BINARY, written);
+  }
+
+  @Test
+  void textUnterminatedLineIsDroppedOnOpen() throws Exception {
+    Path file = directory.resolve("history.txt");
+    List<ExchangeRecord> written = writeRecords(file, HistoryFormat.TEXT, 0, 3);
+    Files.write(file, "Дата: Mon Jan 01 00:00:03 UTC 2024, Сумма: 1".getBytes(StandardCharsets.UTF_8),
+        StandardOpenOption.APPEND);
+    written.addAll(writeRecords(file, HistoryFormat.TEXT, 3, 2));
+
+    assertRecovered(file, HistoryFormat.TEXT, written);
+  }
+
+  @Test
+  void truncateTornTailKeepsCompleteFile() throws IOException {
+    Path file = directory.resolve("history.txt");
+    Files.write(file, "a\nb\n".getBytes(StandardCharsets.UTF_8));
+    assertEquals(0, HistoryJournal.truncateTornTail(file, HistoryFormat.TEXT));
+    Files.write(file, "c".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    assertEquals(1, HistoryJournal.truncateTornTail(file, HistoryFormat.TEXT));
+    assertEquals(4, Files.size(file));
+    assertEquals(0, HistoryJournal.truncateTornTail(directory.resolve("missing.bin"),
+        HistoryFormat.BINARY));
+  }
+
+  @Test
+  void invalidAmountsAreRejectedWithoutStoppingWriter() throws Exception {
+    Path file = directory.resolve("history.bin");
+    try (HistoryJournal journal = new HistoryJournal(file, HistoryFormat.BINARY)) {
+      for (double amount : new double[] {Double.NaN, Double.POSITIVE_INFINITY, 1e300}) {
+        assertThrows(IllegalArgumentException.class, () -> journal.append(START_MILLIS, amount,
+            CurrencyEnum.USD, CurrencyEnum.EUR, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> journal.append(START_MILLIS, 1,
+            CurrencyEnum.USD, CurrencyEnum.EUR, amount, 1));
+      }
+      journal.append(START_MILLIS, 10, CurrencyEnum.USD, CurrencyEnum.EUR, 8.5, 1);
+      journal.flush();
+      assertEquals(1, journal.getAggregates().totals(CurrencyEnum.USD, CurrencyEnum.EUR,
+          Long.MIN_VALUE, Long.MAX_VALUE).getCount());
+    }
+    assertEquals(HistoryFormat.RECORD_SIZE, Files.size(file));
+  }
+
+  // Журнал читается заново с индексом и итогами: видны все целые записи и только они
+  private static void assertRecovered(Path file, HistoryFormat format,
+      List<ExchangeRecord> expected) throws IOException {
+    try (Stream<ExchangeRecord> records = new ExchangeHistory(file, format)
+        .stream(HistoryQuery.all())) {
+      assertEquals(lines(expected), lines(records.collect(Collectors.toList())));
+    }
+    HistoryQuery lastTwo = HistoryQuery.all().from(new Date(START_MILLIS + 3_000));
+    try (Stream<ExchangeRecord> records = new ExchangeHistory(file, format).stream(lastTwo)) {
+      assertEquals(2, records.count());
+    }
+    HistoryAggregates aggregates = HistoryAggregates.recover(file, format,
+        HistoryAggregates.DEFAULT_BUCKET_MILLIS);
+    assertEquals(expected.size(), aggregates.totals(CurrencyEnum.USD, CurrencyEnum.EUR,
+        Long.MIN_VALUE, Long.MAX_VALUE).getCount());
+  }
+
+  // Открывает журнал, пишет count записей с номерами от first (по одной в секунду) и закрывает его
+  private static List<ExchangeRecord> writeRecords(Path file, HistoryFormat format, int first,
+      int count) throws InterruptedException {
+    List<ExchangeRecord> records = new ArrayList<>();
+    try (HistoryJournal journal = new HistoryJournal(file, format)) {
+      for (int i = first; i < first + count; i++) {
+        ExchangeRecord exchangeRecord = new ExchangeRecord(START_MILLIS + i * 1000L, 10 + i,
+            CurrencyEnum.USD, CurrencyEnum.EUR, 8.5 + i, 1);
+        journal.append(exchangeRecord);
+        records.add(exchangeRecord);
+      }
+    }
+    return records;
+  }
+
+  private static List<String> lines(List<ExchangeRecord> records) {
+    return records.stream().map(ExchangeRecord::toString).collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,67 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.TimeZone;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/* Тесты сегментов журнала HistorySegments: границы суточных периодов по местному времени.
+ */
+class HistorySegmentsTest {
+
+  // 2024-01-01T00:00:00Z
+  private static final long START_MILLIS = 1_704_067_200_000L;
+  private static final long HOUR_MILLIS = 3_600_000L;
+  private static final long DAY_MILLIS = HistorySegments.DEFAULT_SEGMENT_MILLIS;
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void periodEndsAtLocalMidnight() {
+    assertEquals(START_MILLIS + DAY_MILLIS,
+        HistorySegments.periodEnd(START_MILLIS, DAY_MILLIS, ZoneOffset.UTC));
+    // Полночь UTC - это 03:00 по Москве, местные сутки кончаются через 21 час
+    assertEquals(START_MILLIS + 21 * HOUR_MILLIS,
+        HistorySegments.periodEnd(START_MILLIS, DAY_MILLIS, ZoneId.of("Europe/Moscow")));
+    // 31 марта 2024 года в Берлине переход на летнее время: сутки длятся 23 часа
+    long berlinMarch31 = 1_711_839_600_000L;
+    assertEquals(berlinMarch31 + 23 * HOUR_MILLIS,
+        HistorySegments.periodEnd(berlinMarch31, DAY_MILLIS, ZoneId.of("Europe/Berlin")));
+    assertEquals(Long.MAX_VALUE,
+        HistorySegments.periodEnd(Long.MAX_VALUE - 1, DAY_MILLIS, ZoneOffset.UTC));
+  }
+
+  @Test
+  void journalRotatesAtLocalMidnight() throws Exception {
+    TimeZone defaultZone = TimeZone.getDefault();
+    TimeZone.setDefault(TimeZone.getTimeZone("Europe/Moscow"));
+    try {
+      Path file = directory.resolve("history.bin");
+      try (HistoryJournal journal = new HistoryJournal(file, HistoryFormat.BINARY)) {
+        // 23:00 и 23:30 по Москве 31 декабря, 01:00 и 04:00 1 января;
+        // полночь UTC (03:00 по Москве) границей сегмента не является
+        for (long time : new long[] {START_MILLIS - 4 * HOUR_MILLIS,
+            START_MILLIS - 7 * HOUR_MILLIS / 2, START_MILLIS - 2 * HOUR_MILLIS,
+            START_MILLIS + HOUR_MILLIS}) {
+          journal.append(time, 10, CurrencyEnum.USD, CurrencyEnum.EUR, 8.5, 1);
+        }
+      }
+      List<HistorySegments.Segment> segments = HistorySegments.list(file);
+      assertEquals(2, segments.size());
+      assertFalse(segments.get(0).isActive());
+      assertTrue(segments.get(1).isActive());
+      // Закрытый сегмент содержит только записи 31 декабря по Москве
+      assertFalse(segments.get(0).overlaps(START_MILLIS - 2 * HOUR_MILLIS, Long.MAX_VALUE, 0));
+      assertEquals(4, new ExchangeHistory(file, HistoryFormat.BINARY)
+          .search(HistoryQuery.all()).size());
+    } finally {
+      TimeZone.setDefault(defaultZone);
+    }
+  }
+}
@@ -0,0 +1,24 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.RoundingMode;
+import org.junit.jupiter.api.Test;
+
+/* Тесты перевода сумм в минимальные единицы MoneyMath: сообщения об ошибках.
+ */
+class MoneyMathTest {
+
+  @Test
+  void hugeAmountIsReportedInScientificNotation() {
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+        () -> MoneyMath.toMinorUnits(1e300, CurrencyEnum.USD, RoundingMode.HALF_EVEN));
+    assertEquals("Сумма слишком велика: 1.0E+300", e.getMessage());
+  }
+
+  @Test
+  void tinyAmountIsReportedInScientificNotation() {
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+        () -> MoneyMath.toMinorUnits(1e-300, CurrencyEnum.USD, RoundingMode.UNNECESSARY));
+    assertEquals("Сумма 1.0E-300 требует округления до 2 знаков.", e.getMessage());
+  }
+}